@@ -0,0 +1,29 @@
+package com.midlaj.olikassigment.annotation;
+
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.*;
+
+/**
+ * Retries a rental write when a concurrent update is detected through the version column, with the attempts
+ * and the randomized exponential backoff of library.rental.retry. Conflicts are counted by the
+ * rentalRetryListener, tagged with the operation name given here
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Retryable(retryFor = OptimisticLockingFailureException.class, listeners = "rentalRetryListener",
+        maxAttemptsExpression = "${library.rental.retry.max-attempts}",
+        backoff = @Backoff(delayExpression = "${library.rental.retry.delay}", maxDelayExpression = "${library.rental.retry.max-delay}",
+                multiplierExpression = "${library.rental.retry.multiplier}", random = true))
+public @interface RentalRetry {
+
+    /**
+     * @return name of the operation
+     */
+    @AliasFor(annotation = Retryable.class, attribute = "label")
+    String value();
+}
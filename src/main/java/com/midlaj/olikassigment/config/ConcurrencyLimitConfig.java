@@ -0,0 +1,78 @@
+package com.midlaj.olikassigment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Concurrency limit of the api requests, sized from the connection pool. Meant for the virtual thread
+ * execution mode, where the number of request threads is no longer bounded by the Tomcat pool
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.concurrency-limit.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    private static final List<PathPattern> EXPORT_PATHS = Stream.of("/api/book/export", "/api/rental/overdue/{days}/export")
+            .map(PathPatternParser.defaultInstance::parse)
+            .toList();
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    /**
+     * Requests are allowed per pooled connection times the multiplier. A request keeps its connection
+     * until it completes once it used the database, but requests answered from the in memory indexes
+     * never take one, so the limit is set above the pool size
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${library.concurrency-limit.requests-per-connection:2}") int requestsPerConnection,
+            @Value("${library.concurrency-limit.acquire-timeout:PT1S}") Duration acquireTimeout,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter("api", request -> !isExport(request), poolSize * requestsPerConnection,
+                        acquireTimeout, objectMapper, meterRegistry));
+        registration.setName("concurrencyLimitFilter");
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    /**
+     * Streaming exports keep their permit and their connection until the last row is written, so they have
+     * a limit of their own instead of holding permits of the other requests for that long
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> exportConcurrencyLimitFilter(
+            @Value("${library.concurrency-limit.exports:2}") int exports,
+            @Value("${library.concurrency-limit.acquire-timeout:PT1S}") Duration acquireTimeout,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter("export", ConcurrencyLimitConfig::isExport, exports,
+                        acquireTimeout, objectMapper, meterRegistry));
+        registration.setName("exportConcurrencyLimitFilter");
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    /**
+     * @param request
+     * @return true for the streaming exports, /api/book/export and /api/rental/overdue/{days}/export
+     */
+    public static boolean isExport(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(URL_PATH_HELPER.getPathWithinApplication(request));
+        return EXPORT_PATHS.stream().anyMatch(pattern -> pattern.matches(path));
+    }
+}
@@ -0,0 +1,94 @@
+package com.midlaj.olikassigment.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midlaj.olikassigment.dto.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Bounds the number of api requests handled at the same time. With virtual threads every request gets its
+ * own thread, so a spike of slow queries no longer queues in front of Tomcat but piles up on the connection
+ * pool instead. Requests beyond the limit wait for a permit up to the acquire timeout and are then answered
+ * with 503, instead of each waiting for a connection until the pool times out.
+ * A filter only limits the requests it applies to, its metrics are tagged with the name of its limit.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Predicate<HttpServletRequest> appliesTo;
+
+    private final Semaphore permits;
+
+    private final long acquireTimeoutNanos;
+
+    private final ObjectMapper objectMapper;
+
+    private final Counter rejected;
+
+    /**
+     * @param limit                 name of the limit, the limit tag of the metrics
+     * @param appliesTo             requests counted against the limit, the others pass through
+     * @param maxConcurrentRequests
+     * @param acquireTimeout
+     * @param objectMapper
+     * @param meterRegistry
+     */
+    public ConcurrencyLimitFilter(String limit, Predicate<HttpServletRequest> appliesTo, int maxConcurrentRequests,
+                                  Duration acquireTimeout, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.appliesTo = appliesTo;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.objectMapper = objectMapper;
+        this.rejected = meterRegistry.counter("library.requests.concurrency.rejected", "limit", limit);
+        Gauge.builder("library.requests.concurrency.available", permits, Semaphore::availablePermits)
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !appliesTo.test(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ErrorResponse("BUSY", "Too many concurrent requests, please try again."));
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.midlaj.olikassigment.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics configurations. Service classes annotated with @Timed record the duration of every public method
+ * in the library.service timer, tagged by class and method and by the exception thrown, if any.
+ * Requests are timed per uri by http.server.requests and repository queries per repository and method by
+ * spring.data.repository.invocations, both auto configured. Histogram buckets of all three are published
+ * on /actuator/prometheus, see management.metrics.distribution
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TIMER = "library.service";
+
+    public static final String ERROR_COUNTER = "library.errors";
+
+    /**
+     * Aspect recording the timers of @Timed methods and classes
+     * @param meterRegistry
+     * @return timed aspect
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,126 @@
+package com.midlaj.olikassigment.config;
+
+import com.midlaj.olikassigment.sql.ReplicaLagMonitor;
+import com.midlaj.olikassigment.sql.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read replicas. Read only transactions run on a replica within the maximum lag, picked in turn, every other
+ * transaction and every statement outside a transaction runs on the primary. The replicas share the
+ * credentials and the pool settings of the primary, spring.datasource.hikari. The in memory indexes load in
+ * read write transactions, a replica behind the primary would leave out the changes made before the load,
+ * which their listeners never apply.
+ * When disabled nothing is put in front of the data source, so every statement runs on the primary
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    /**
+     * A pool for every replica url, checked by the monitor. Static, it is created while the data source is
+     * post processed
+     */
+    @Bean
+    public static ReplicaLagMonitor replicaLagMonitor(
+            @Value("${library.replicas.urls}") String[] urls,
+            @Value("${library.replicas.max-lag:PT1S}") Duration maxLag,
+            @Value("${library.replicas.lag-check-timeout:PT1S}") Duration lagCheckTimeout,
+            DataSourceProperties properties, Environment environment) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource replica = new HikariDataSource();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls[i].trim());
+            replica.setUsername(properties.determineUsername());
+            replica.setPassword(properties.determinePassword());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setReadOnly(true);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaLagMonitor(replicas, maxLag, lagCheckTimeout);
+    }
+
+    /**
+     * Puts ReplicaRoutingDataSource behind a LazyConnectionDataSourceProxy in front of the data source once
+     * it is initialized. It runs before the other post processors, so the sql statistics wrap the routing
+     * and count the statements of the replicas too. Its type is declared, the order of a post processor is
+     * read from the type of its bean before it is created
+     */
+    @Bean
+    public static RoutingPostProcessor replicaRoutingDataSourcePostProcessor(ObjectProvider<ReplicaLagMonitor> monitor) {
+        return new RoutingPostProcessor(monitor);
+    }
+
+    /**
+     * Hibernate takes the connection on the first statement and gives it back at the end of every transaction,
+     * instead of holding it until the request completes, so each transaction of a request picks its own
+     * connection. Only set with replicas, without them one connection per request is cheaper
+     */
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandling() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public MeterBinder replicaMetrics(ReplicaLagMonitor monitor) {
+        return registry -> {
+            monitor.replicas().keySet().forEach(name ->
+                    Gauge.builder("library.datasource.replica.lag", monitor, m -> m.lagSeconds(name))
+                            .tag("replica", name)
+                            .baseUnit("seconds")
+                            .register(registry));
+            Gauge.builder("library.datasource.replica.healthy", monitor, m -> m.healthyReplicas().size())
+                    .register(registry);
+            FunctionCounter.builder("library.datasource.replica.fallbacks", monitor, ReplicaLagMonitor::fallbackCount)
+                    .register(registry);
+        };
+    }
+
+    static final class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final ObjectProvider<ReplicaLagMonitor> monitor;
+
+        RoutingPostProcessor(ObjectProvider<ReplicaLagMonitor> monitor) {
+            this.monitor = monitor;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof LazyConnectionDataSourceProxy)
+                    && !(bean instanceof ReplicaRoutingDataSource)) {
+                return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(dataSource, monitor.getObject()));
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.midlaj.olikassigment.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.annotation.EnableRetry;
+
+/**
+ * Retry configurations. The retry advice is ordered before the transaction advice, so every attempt
+ * runs in a fresh transaction
+ */
+@Configuration
+@EnableRetry
+public class RetryConfig {
+
+    /**
+     * Counts optimistic locking conflicts of the rental write path, tagged by operation. A conflict that
+     * is still failing after the last attempt is counted as exhausted
+     * @param meterRegistry
+     * @return retry listener
+     */
+    @Bean
+    public RetryListener rentalRetryListener(MeterRegistry meterRegistry) {
+        return new RetryListener() {
+
+            @Override
+            public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                if (throwable instanceof OptimisticLockingFailureException) {
+                    meterRegistry.counter("library.rental.optimistic.lock.conflicts", "operation", operation(context)).increment();
+                }
+            }
+
+            @Override
+            public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                if (throwable instanceof OptimisticLockingFailureException) {
+                    meterRegistry.counter("library.rental.optimistic.lock.exhausted", "operation", operation(context)).increment();
+                }
+            }
+        };
+    }
+
+    private static String operation(RetryContext context) {
+        Object name = context.getAttribute(RetryContext.NAME);
+        return name == null ? "unknown" : name.toString();
+    }
+}
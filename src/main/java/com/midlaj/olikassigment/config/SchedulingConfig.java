@@ -0,0 +1,13 @@
+package com.midlaj.olikassigment.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Scheduling configurations, background jobs run on virtual threads when spring.threads.virtual.enabled
+ * is set and on the scheduler thread pool sized by spring.task.scheduling.pool.size otherwise
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,69 @@
+package com.midlaj.olikassigment.config;
+
+import com.midlaj.olikassigment.sql.SqlStatsEndpoint;
+import com.midlaj.olikassigment.sql.SqlStatsFilter;
+import com.midlaj.olikassigment.sql.SqlStatsRecorder;
+import com.midlaj.olikassigment.sql.StatementStatsDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Sql statistics, statement counts and times per request, slow queries and repeated selects.
+ * When disabled nothing is put in front of the data source, so statements run as before
+ */
+@Configuration
+@ConditionalOnProperty(name = "library.sql-stats.enabled", havingValue = "true")
+public class SqlStatsConfig {
+
+    @Bean
+    public static SqlStatsRecorder sqlStatsRecorder(
+            @Value("${library.sql-stats.slow-query-threshold:PT0.1S}") Duration slowQueryThreshold,
+            @Value("${library.sql-stats.repeated-query-threshold:10}") int repeatedQueryThreshold,
+            @Value("${library.sql-stats.buffer-size:100}") int bufferSize) {
+        return new SqlStatsRecorder(slowQueryThreshold, repeatedQueryThreshold, bufferSize);
+    }
+
+    /**
+     * Puts StatementStatsDataSource in front of the data source once it is initialized. It is static and
+     * looks the recorder up lazily, so it does not force other beans to be created early
+     */
+    @Bean
+    public static BeanPostProcessor statementStatsDataSourcePostProcessor(ObjectProvider<SqlStatsRecorder> recorder) {
+        return new BeanPostProcessor() {
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof StatementStatsDataSource)) {
+                    return new StatementStatsDataSource(dataSource, recorder.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlStatsFilter> sqlStatsFilter(SqlStatsRecorder recorder, MeterRegistry meterRegistry) {
+        FunctionCounter.builder("library.sql.slow.queries", recorder, SqlStatsRecorder::slowQueryCount)
+                .register(meterRegistry);
+
+        FilterRegistrationBean<SqlStatsFilter> registration = new FilterRegistrationBean<>(
+                new SqlStatsFilter(recorder, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    @Bean
+    public SqlStatsEndpoint sqlStatsEndpoint(SqlStatsRecorder recorder) {
+        return new SqlStatsEndpoint(recorder);
+    }
+}
@@ -1,12 +1,19 @@
 package com.midlaj.olikassigment.controller;
 
+import com.midlaj.olikassigment.config.CacheConfig;
+import com.midlaj.olikassigment.dto.AuthorDeletionReport;
 import com.midlaj.olikassigment.dto.AuthorRequest;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.service.AuthorService;
+import com.midlaj.olikassigment.util.CursorUtils;
 import jakarta.validation.Valid;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 /**
  * Author Controller where all the crud operations of author mapped
@@ -19,9 +26,15 @@ public class AuthorController {
 
     private final AuthorService authorService;
 
+    private final HttpCaching httpCaching;
 
-    public AuthorController(AuthorService authorService) {
+    private final CacheManager cacheManager;
+
+
+    public AuthorController(AuthorService authorService, HttpCaching httpCaching, CacheManager cacheManager) {
         this.authorService = authorService;
+        this.httpCaching = httpCaching;
+        this.cacheManager = cacheManager;
     }
 
     /**
@@ -36,35 +49,59 @@ public class AuthorController {
     }
 
     /**
-     * for getting author with id
+     * for getting author with id. Answers 304 without loading the author when the ETag or Last-Modified
+     * sent by the client is still current, a request without them is answered from the cached author
      * @param id
      * @return Author object
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getAuthorById(@PathVariable Long id) {
+    public ResponseEntity<?> getAuthorById(@PathVariable Long id, ServletWebRequest request) {
+        EntityVersion current = null;
+        if (httpCaching.isConditional(request)) {
+            current = authorService.getAuthorVersion(id);
+            if (httpCaching.checkNotModified(request, current)) return null;
+        }
+
         Author createdAuthor = authorService.getAuthorById(id);
-        return new ResponseEntity<>(createdAuthor, HttpStatus.OK);
+        if (current != null && !current.equals(EntityVersion.of(createdAuthor))) {
+            /**
+             * The cached author is behind the database, changed through another instance or not evicted yet
+             */
+            cacheManager.getCache(CacheConfig.AUTHORS).evict(id);
+            createdAuthor = authorService.getAuthorById(id);
+        }
+        httpCaching.setValidators(request, EntityVersion.of(createdAuthor));
+        return ResponseEntity.ok(createdAuthor);
     }
 
 
     /**
-     * fot getting all authors
+     * fot getting all authors, one page at a time. The cursor of the next page is sent in the X-Next-Cursor header,
+     * an unchanged page is answered with 304
+     * @param after cursor of the previous page
+     * @param limit page size
      * @return List of author
      */
     @GetMapping()
-    public ResponseEntity<?> getAuthors() {
-        return ResponseEntity.ok(authorService.getAuthors());
+    public ResponseEntity<?> getAuthors(@RequestParam(required = false) String after,
+                                        @RequestParam(required = false) Integer limit) {
+        CursorPage<Author> page = authorService.getAuthors(after, limit);
+        return ResponseEntity.ok()
+                .headers(CursorUtils.nextCursorHeaders(page))
+                .cacheControl(httpCaching.cacheControl())
+                .eTag(httpCaching.pageTag(page, Author::getId, Author::getVersion))
+                .body(page.items());
     }
 
     /**
-     * fot deleting an author by id
+     * fot deleting an author by id, together with its books
      * @param id
-     * @return void
+     * @return number of deleted books
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteAuthorById(@PathVariable Long id) {
-        authorService.deleteAuthorById(id);
-        return new ResponseEntity<>(HttpStatus.OK);
+        AuthorDeletionReport report = authorService.deleteAuthorById(id);
+        return new ResponseEntity<>(report, HttpStatus.OK);
     }
 
 
@@ -1,14 +1,31 @@
 package com.midlaj.olikassigment.controller;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.midlaj.olikassigment.config.CacheConfig;
 import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
 import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.service.BookImportService;
 import com.midlaj.olikassigment.service.BookService;
+import com.midlaj.olikassigment.util.CursorUtils;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -22,9 +39,22 @@ public class BookController {
 
     private final BookService bookService;
 
+    private final BookImportService bookImportService;
 
-    public BookController(BookService bookService) {
+    private final ObjectMapper objectMapper;
+
+    private final HttpCaching httpCaching;
+
+    private final CacheManager cacheManager;
+
+
+    public BookController(BookService bookService, BookImportService bookImportService, ObjectMapper objectMapper,
+                          HttpCaching httpCaching, CacheManager cacheManager) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.objectMapper = objectMapper;
+        this.httpCaching = httpCaching;
+        this.cacheManager = cacheManager;
     }
 
     /**
@@ -39,24 +69,123 @@ public class BookController {
     }
 
     /**
-     * for getting book with id
+     * for importing a catalogue as csv with the columns title,authorId,isbn,publicationYear.
+     * The upload is streamed and inserted in chunks
+     * @param inputStream request body
+     * @return import report with the rejected rows
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importBooksCsv(InputStream inputStream) {
+        return ResponseEntity.ok(bookImportService.importCsv(inputStream));
+    }
+
+    /**
+     * for importing a catalogue as newline delimited json, one book request per line.
+     * The upload is streamed and inserted in chunks
+     * @param inputStream request body
+     * @return import report with the rejected rows
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> importBooksNdjson(InputStream inputStream) {
+        return ResponseEntity.ok(bookImportService.importNdjson(inputStream));
+    }
+
+    /**
+     * for getting book with id. Answers 304 without loading the book when the ETag or Last-Modified
+     * sent by the client is still current, a request without them is answered from the cached book
      * @param id
      * @return Book object
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getBookById(@PathVariable Long id) {
+    public ResponseEntity<?> getBookById(@PathVariable Long id, ServletWebRequest request) {
+        EntityVersion current = null;
+        if (httpCaching.isConditional(request)) {
+            current = bookService.getBookVersion(id);
+            if (httpCaching.checkNotModified(request, current)) return null;
+        }
+
         Book createdBook = bookService.getBookById(id);
-        return new ResponseEntity<>(createdBook, HttpStatus.OK);
+        if (current != null && !current.equals(EntityVersion.of(createdBook))) {
+            /**
+             * The cached book is behind the database, changed through another instance or not evicted yet
+             */
+            cacheManager.getCache(CacheConfig.BOOKS).evict(id);
+            createdBook = bookService.getBookById(id);
+        }
+        httpCaching.setValidators(request, EntityVersion.of(createdBook));
+        return ResponseEntity.ok(createdBook);
     }
 
+    /**
+     * for searching books by the words of their title and author name, the last word may be incomplete
+     * @param q search text
+     * @param limit maximum number of books
+     * @return list of book summary, best match first
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchBooks(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(bookService.searchBooks(q, limit));
+    }
 
     /**
-     * fot getting all books
-     * @return List of book
+     * for type ahead on book titles and author names
+     * @param prefix text typed so far
+     * @param limit maximum number of suggestions
+     * @return list of suggestion, best first
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<?> autocomplete(@RequestParam String prefix, @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(bookService.autocomplete(prefix, limit));
+    }
+
+    /**
+     * for getting book with isbn, as scanned at the desk
+     * @param isbn
+     * @return Book object
+     */
+    @GetMapping("/isbn/{isbn}")
+    public ResponseEntity<?> getBookByIsbn(@PathVariable String isbn) {
+        Book book = bookService.getBookById(bookService.getBookIdByIsbn(isbn));
+        return new ResponseEntity<>(book, HttpStatus.OK);
+    }
+
+
+    /**
+     * fot getting all books, one page at a time. The cursor of the next page is sent in the X-Next-Cursor header
+     * @param after cursor of the previous page
+     * @param limit page size
+     * @return List of book summary
      */
     @GetMapping()
-    public ResponseEntity<?> getBooks() {
-        return ResponseEntity.ok(bookService.getBooks());
+    public ResponseEntity<?> getBooks(@RequestParam(required = false) String after,
+                                      @RequestParam(required = false) Integer limit) {
+        CursorPage<BookSummary> page = bookService.getBooks(after, limit);
+        return pageResponse(page);
+    }
+
+    /**
+     * Endpoint to export the whole catalogue as newline delimited json. Books are written to the
+     * response as they are read from the database, so memory use does not grow with the catalogue
+     * @param response
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportBooks(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        ObjectWriter writer = objectMapper.writerFor(Book.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            bookService.exportBooks(book -> {
+                try {
+                    writer.writeValue(generator, book);
+                    generator.writeRaw('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
     }
 
     /**
@@ -72,35 +201,73 @@ public class BookController {
 
 
     /**
-     * Endpoint to retrieve books by author
+     * Endpoint to retrieve books by author, one page at a time. The cursor of the next page is sent in the X-Next-Cursor header
      * @param authorId
-     * @return list of book
+     * @param after cursor of the previous page
+     * @param limit page size
+     * @return list of book summary
      */
     @GetMapping("/author/{authorId}")
-    public ResponseEntity<?> getBooksByAuthor(@PathVariable Long authorId) {
-        List<Book> books = bookService.findBooksByAuthor(authorId);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<?> getBooksByAuthor(@PathVariable Long authorId,
+                                              @RequestParam(required = false) String after,
+                                              @RequestParam(required = false) Integer limit) {
+        CursorPage<BookSummary> page = bookService.findBooksByAuthor(authorId, after, limit);
+        return pageResponse(page);
     }
 
     /**
-     *  Endpoint to retrieve books available for rent
-     * @return list of book
+     *  Endpoint to retrieve books available for rent, one page at a time. The cursor of the next page is sent in the X-Next-Cursor header
+     * @param after cursor of the previous page
+     * @param limit page size
+     * @return list of book summary
      */
     @GetMapping("/available")
-    public ResponseEntity<?> getAvailableBooksForRent() {
-        List<Book> availableBooks = bookService.findAvailableBooksForRent();
-        return ResponseEntity.ok(availableBooks);
+    public ResponseEntity<?> getAvailableBooksForRent(@RequestParam(required = false) String after,
+                                                      @RequestParam(required = false) Integer limit) {
+        CursorPage<BookSummary> page = bookService.findAvailableBooksForRent(after, limit);
+        return pageResponse(page);
     }
 
     /**
-     * Endpoint to retrieve books currently rented
-     * @return list of book
+     * Endpoint to retrieve books currently rented, one page at a time. The cursor of the next page is sent in the X-Next-Cursor header
+     * @param after cursor of the previous page
+     * @param limit page size
+     * @return list of book summary
      */
     @GetMapping("/rented")
-    public ResponseEntity<?> getRentedBooks() {
-        List<Book> rentedBooks = bookService.findRentedBooks();
-        return ResponseEntity.ok(rentedBooks);
+    public ResponseEntity<?> getRentedBooks(@RequestParam(required = false) String after,
+                                            @RequestParam(required = false) Integer limit) {
+        CursorPage<BookSummary> page = bookService.findRentedBooks(after, limit);
+        return pageResponse(page);
     }
 
+    /**
+     * Endpoint to count available and rented books
+     * @return counts
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<?> getAvailabilityCounts() {
+        return ResponseEntity.ok(bookService.getAvailabilityCounts());
+    }
+
+    /**
+     * Endpoint to check whether a book can be rented out
+     * @param id
+     * @return availability of the book
+     */
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<?> getBookAvailability(@PathVariable Long id) {
+        return ResponseEntity.ok(bookService.getBookAvailability(id));
+    }
 
+    /**
+     * A page of book summaries with its next cursor and a weak ETag, an unchanged page is answered with 304
+     */
+    private ResponseEntity<?> pageResponse(CursorPage<BookSummary> page) {
+        return ResponseEntity.ok()
+                .headers(CursorUtils.nextCursorHeaders(page))
+                .cacheControl(httpCaching.cacheControl())
+                .eTag(httpCaching.pageTag(page, BookSummary::id, BookSummary::version))
+                .body(page.items());
+    }
 }
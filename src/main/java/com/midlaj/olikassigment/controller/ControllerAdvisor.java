@@ -1,10 +1,17 @@
 package com.midlaj.olikassigment.controller;
 
+import com.midlaj.olikassigment.config.MetricsConfig;
 import com.midlaj.olikassigment.dto.ErrorResponse;
 import com.midlaj.olikassigment.exception.AlreadyRentedException;
 import com.midlaj.olikassigment.exception.DuplicateEntityException;
+import com.midlaj.olikassigment.exception.EntityInUseException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.exception.InvalidCursorException;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -15,10 +22,22 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Controller advisor for the exceptions of the api. Ordered ahead of GeneralControllerAdvisor, the advice
+ * answering first is picked by the order of the advices alone, so its catch-all handler would otherwise
+ * answer these exceptions too, depending on the order the advices were scanned in
+ */
 @RestControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
 @Slf4j
 public class ControllerAdvisor {
 
+    private final MeterRegistry meterRegistry;
+
+    public ControllerAdvisor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     /**
      * For duplicate entity
      *
@@ -33,6 +52,7 @@ public class ControllerAdvisor {
          * log error
          */
         log.warn(ex.getMessage());
+        count("DUPLICATE", ex);
 
         return new ErrorResponse("DUPLICATE", ex.getMessage());
     }
@@ -51,6 +71,7 @@ public class ControllerAdvisor {
          * log error
          */
         log.warn(ex.getMessage());
+        count("ENTITY_NOT_FOUND", ex);
 
         return new ErrorResponse("ENTITY_NOT_FOUND", ex.getMessage());
     }
@@ -69,10 +90,68 @@ public class ControllerAdvisor {
          * log error
          */
         log.warn(ex.getMessage());
+        count("NOT_AVAILABLE", ex);
 
         return new ErrorResponse("NOT_AVAILABLE", ex.getMessage());
     }
 
+    /**
+     * For entity still referenced by open rentals
+     *
+     * @param ex
+     * @return error_name IN_USE
+     */
+    @ExceptionHandler(EntityInUseException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleEntityInUse(EntityInUseException ex) {
+
+        /**
+         * log error
+         */
+        log.warn(ex.getMessage());
+        count("IN_USE", ex);
+
+        return new ErrorResponse("IN_USE", ex.getMessage());
+    }
+
+    /**
+     * For concurrent updates still conflicting after every retry
+     *
+     * @param ex
+     * @return error_name CONCURRENT_UPDATE
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ErrorResponse handleConcurrentUpdate(OptimisticLockingFailureException ex) {
+
+        /**
+         * log error
+         */
+        log.warn(ex.getMessage());
+        count("CONCURRENT_UPDATE", ex);
+
+        return new ErrorResponse("CONCURRENT_UPDATE", "The record was updated concurrently, please try again.");
+    }
+
+    /**
+     * For malformed page cursor
+     *
+     * @param ex
+     * @return error_name INVALID_CURSOR
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handleInvalidCursor(InvalidCursorException ex) {
+
+        /**
+         * log error
+         */
+        log.warn(ex.getMessage());
+        count("INVALID_CURSOR", ex);
+
+        return new ErrorResponse("INVALID_CURSOR", ex.getMessage());
+    }
+
     /**
      * For validation errors
      *
@@ -88,6 +167,7 @@ public class ControllerAdvisor {
          * log error
          */
         log.warn(ex.getMessage());
+        count("INVALID_DATA", ex);
 
         Map<String, String> errors = new HashMap<>();
         errors.put("error_name", "INVALID_DATA");
@@ -98,5 +178,12 @@ public class ControllerAdvisor {
         });
         return errors;
     }
-}
 
+    /**
+     * Counts the handled error by error name and exception
+     */
+    private void count(String errorName, Exception ex) {
+        meterRegistry.counter(MetricsConfig.ERROR_COUNTER, "error_name", errorName,
+                "exception", ex.getClass().getSimpleName()).increment();
+    }
+}
@@ -1,6 +1,8 @@
 package com.midlaj.olikassigment.controller;
 
+import com.midlaj.olikassigment.config.MetricsConfig;
 import com.midlaj.olikassigment.dto.ErrorResponse;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
 import org.springframework.http.HttpStatus;
@@ -16,6 +18,12 @@ import org.springframework.web.servlet.NoHandlerFoundException;
 @Slf4j
 public class GeneralControllerAdvisor {
 
+    private final MeterRegistry meterRegistry;
+
+    public GeneralControllerAdvisor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleException(Exception ex) {
 
@@ -35,6 +43,9 @@ public class GeneralControllerAdvisor {
             error_name = "NOT_ROUTE_FOUND";
         }
 
+        meterRegistry.counter(MetricsConfig.ERROR_COUNTER, "error_name", error_name,
+                "exception", ex.getClass().getSimpleName()).increment();
+
         String errorMessage = "An unexpected error occurred.";
         ErrorResponse errorResponse = new ErrorResponse(error_name, errorMessage);
 
@@ -0,0 +1,97 @@
+package com.midlaj.olikassigment.controller;
+
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * Conditional GET support of the book and author endpoints. Single books and authors are tagged with the
+ * version columns of the entities they show. A conditional request reads them before the entity is loaded,
+ * a plain one takes them from the cached entity, so it does not query the database. The validators sent
+ * are always the ones of the entity in the body. Pages of a listing are
+ * tagged with a weak ETag computed from the ids and versions of their items, so an unchanged page is
+ * answered with 304 and no body. Both are sent with a Cache-Control of library.http-cache.max-age.
+ */
+@Component
+public class HttpCaching {
+
+    private final CacheControl cacheControl;
+
+    public HttpCaching(@Value("${library.http-cache.max-age:PT0S}") Duration maxAge) {
+        this.cacheControl = CacheControl.maxAge(maxAge).mustRevalidate();
+    }
+
+    public CacheControl cacheControl() {
+        return cacheControl;
+    }
+
+    /**
+     * @param request
+     * @return true when the request carries If-None-Match or If-Modified-Since, only then the version of the
+     * entity is worth reading before the entity
+     */
+    public boolean isConditional(ServletWebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * Checks the If-None-Match and If-Modified-Since headers against the version of the entity. The ETag,
+     * Last-Modified and Cache-Control headers are set on the response either way, so the handler does not
+     * set them again
+     * @param request
+     * @param version current version of the entity
+     * @return true when the client copy is current, the response is then a 304 and the handler returns null
+     */
+    public boolean checkNotModified(ServletWebRequest request, EntityVersion version) {
+        if (request.getResponse() != null) {
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+        return request.checkNotModified(version.tag(), version.lastModified().toEpochMilli());
+    }
+
+    /**
+     * Sets the ETag, Last-Modified and Cache-Control headers of an entity sent in full, replacing the ones set
+     * by checkNotModified
+     * @param request
+     * @param version version of the entity in the body
+     */
+    public void setValidators(ServletWebRequest request, EntityVersion version) {
+        HttpServletResponse response = request.getResponse();
+        if (response == null) return;
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ETAG, "\"" + version.tag() + "\"");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, version.lastModified().toEpochMilli());
+    }
+
+    /**
+     * Weak ETag of a page, from the id and version of every item and the cursor of the next page
+     * @param page
+     * @param idOf
+     * @param versionOf
+     * @return ETag header value
+     */
+    public <T> String pageTag(CursorPage<T> page, ToLongFunction<T> idOf, ToLongFunction<T> versionOf) {
+        long hash = Objects.hashCode(page.nextCursor());
+        for (T item : page.items()) {
+            hash = mix(hash, idOf.applyAsLong(item));
+            hash = mix(hash, versionOf.applyAsLong(item));
+        }
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -1,13 +1,26 @@
 package com.midlaj.olikassigment.controller;
 
+import com.midlaj.olikassigment.dto.BatchItemResult;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.RentalBatchRequest;
 import com.midlaj.olikassigment.dto.RentalRequest;
+import com.midlaj.olikassigment.dto.ReturnBatchRequest;
 import com.midlaj.olikassigment.model.Rental;
 import com.midlaj.olikassigment.service.RentalService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.midlaj.olikassigment.util.CursorUtils;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -19,8 +32,11 @@ public class RentalController {
 
     private final RentalService rentalService;
 
-    public RentalController(RentalService rentalService) {
+    private final ObjectMapper objectMapper;
+
+    public RentalController(RentalService rentalService, ObjectMapper objectMapper) {
         this.rentalService = rentalService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -34,13 +50,26 @@ public class RentalController {
     }
 
     /**
-     * for retrieving all rental
+     * for renting out several books at once
+     * @return result of every rental request
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> createNewRentals(@RequestBody @Valid RentalBatchRequest rentalBatchRequest) {
+        List<BatchItemResult> results = rentalService.createNewRentals(rentalBatchRequest.rentals());
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    /**
+     * for retrieving all rental, one page at a time. The cursor of the next page is sent in the X-Next-Cursor header
+     * @param after cursor of the previous page
+     * @param limit page size
      * @return list of rental
      */
     @GetMapping()
-    public ResponseEntity<?> getAllRentals() {
-        List<Rental> rentalList = rentalService.getAllRentals();
-        return new ResponseEntity<>(rentalList, HttpStatus.OK);
+    public ResponseEntity<?> getAllRentals(@RequestParam(required = false) String after,
+                                           @RequestParam(required = false) Integer limit) {
+        CursorPage<Rental> page = rentalService.getAllRentals(after, limit);
+        return ResponseEntity.ok().headers(CursorUtils.nextCursorHeaders(page)).body(page.items());
     }
 
     /**
@@ -65,12 +94,53 @@ public class RentalController {
     }
 
     /**
-     * for retrieving all due rental within some days
+     * for returning several rentals at once
+     * @return result of every rental id
+     */
+    @PostMapping("/return/batch")
+    public ResponseEntity<?> returnBooks(@RequestBody @Valid ReturnBatchRequest returnBatchRequest) {
+        List<BatchItemResult> results = rentalService.returnBooks(returnBatchRequest.rentalIds());
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    /**
+     * for retrieving all due rental within some days, one page at a time in rental date order.
+     * The cursor of the next page is sent in the X-Next-Cursor header
+     * @param after cursor of the previous page
+     * @param limit page size
      * @return list of rental
      */
     @GetMapping("/overdue/{days}")
-    public ResponseEntity<?> findOverdueRentals(@PathVariable Integer days) {
-        List<Rental> rentalList = rentalService.findOverdueRentals(days);
-        return new ResponseEntity<>(rentalList, HttpStatus.OK);
+    public ResponseEntity<?> findOverdueRentals(@PathVariable Integer days,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
+        CursorPage<Rental> page = rentalService.findOverdueRentals(days, after, limit);
+        return ResponseEntity.ok().headers(CursorUtils.nextCursorHeaders(page)).body(page.items());
+    }
+
+    /**
+     * for exporting every due rental within some days as newline delimited json. Rentals are written to
+     * the response as they are read from the database, so memory use does not grow with the overdue rentals
+     * @param days
+     * @param response
+     */
+    @GetMapping(value = "/overdue/{days}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportOverdueRentals(@PathVariable Integer days, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+
+        ObjectWriter writer = objectMapper.writerFor(Rental.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            rentalService.exportOverdueRentals(days, rental -> {
+                try {
+                    writer.writeValue(generator, rental);
+                    generator.writeRaw('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
     }
 }
@@ -11,10 +11,12 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 /**
- * For inserting some values into database
+ * For inserting some values into database. The schema is kept between restarts, so the values are only
+ * inserted into an empty database
  */
 @Component
 public class DatabaseSeeder {
@@ -32,6 +34,7 @@ public class DatabaseSeeder {
 
     @PostConstruct
     public void seedDatabase() {
+        if (authorRepository.count() > 0) return;
 
         /**
          *  Create author test data
@@ -63,8 +66,7 @@ public class DatabaseSeeder {
                 .available(false)
                 .build();
 
-        Book savedBook1 = bookRepository.save(book1);
-        Book savedBook2 = bookRepository.save(book2);
+        bookRepository.saveAll(List.of(book1, book2));
 
 
         /**
@@ -73,7 +75,7 @@ public class DatabaseSeeder {
         Rental rental = Rental.builder()
                 .renterName("Test_Renter_Name_" + UUID.randomUUID())
                 .rentalDate(LocalDate.now())
-                .bookId(savedBook2.getId())
+                .bookId(book2.getId())
                 .returnDate(null)
                 .build();
 
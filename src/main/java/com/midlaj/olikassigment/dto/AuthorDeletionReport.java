@@ -0,0 +1,10 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Outcome of deleting an author together with its books
+ *
+ * @param authorId     id of the deleted author
+ * @param booksDeleted number of deleted books
+ */
+public record AuthorDeletionReport(Long authorId, int booksDeleted) {
+}
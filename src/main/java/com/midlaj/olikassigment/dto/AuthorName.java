@@ -0,0 +1,10 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Name of an author, read without loading the author entity
+ *
+ * @param id   id of the author
+ * @param name name of the author
+ */
+public record AuthorName(Long id, String name) {
+}
@@ -0,0 +1,10 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Number of books by availability
+ *
+ * @param available books that can be rented out
+ * @param rented    books currently rented out
+ */
+public record AvailabilityCounts(long available, long rented) {
+}
@@ -0,0 +1,13 @@
+package com.midlaj.olikassigment.dto;
+
+import com.midlaj.olikassigment.model.Rental;
+
+/**
+ * Result of a single item of a batch rental or return
+ *
+ * @param id     book id for a rental, rental id for a return
+ * @param status outcome of the item
+ * @param rental created or updated rental, null when the item failed
+ */
+public record BatchItemResult(Long id, BatchItemStatus status, Rental rental) {
+}
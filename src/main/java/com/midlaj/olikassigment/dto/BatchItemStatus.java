@@ -0,0 +1,12 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Outcome of a single item of a batch rental or return
+ */
+public enum BatchItemStatus {
+    RENTED,
+    RETURNED,
+    NOT_FOUND,
+    NOT_AVAILABLE,
+    ALREADY_RETURNED
+}
@@ -0,0 +1,10 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Whether a book can be rented out
+ *
+ * @param bookId    id of the book
+ * @param available true when the book is not rented out
+ */
+public record BookAvailability(Long bookId, Boolean available) {
+}
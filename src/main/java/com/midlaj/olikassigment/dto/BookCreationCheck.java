@@ -0,0 +1,13 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Projection of the checks made before inserting a new book, answered by a single query
+ */
+public interface BookCreationCheck {
+
+    Boolean getAuthorExists();
+
+    Boolean getTitleTaken();
+
+    Boolean getIsbnTaken();
+}
@@ -0,0 +1,10 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * A row of a catalogue import that was not imported
+ *
+ * @param line    line number in the uploaded file, starting at 1
+ * @param message reason the row was rejected
+ */
+public record BookImportError(long line, String message) {
+}
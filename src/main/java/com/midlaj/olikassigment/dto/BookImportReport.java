@@ -0,0 +1,14 @@
+package com.midlaj.olikassigment.dto;
+
+import java.util.List;
+
+/**
+ * Summary of a catalogue import
+ *
+ * @param totalRows    data rows read from the upload
+ * @param importedRows rows inserted as books
+ * @param failedRows   rows rejected
+ * @param errors       rejected rows with the reason, capped to the first errors of the upload
+ */
+public record BookImportReport(long totalRows, long importedRows, long failedRows, List<BookImportError> errors) {
+}
@@ -0,0 +1,10 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Isbn of a book, read without loading the book entity
+ *
+ * @param id   id of the book
+ * @param isbn isbn as stored
+ */
+public record BookIsbn(Long id, String isbn) {
+}
@@ -0,0 +1,18 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * A book as shown in listings, with the id and name of its author instead of the whole author.
+ * Read with a single join, without loading the book and author entities
+ *
+ * @param id              id of the book
+ * @param title           title of the book
+ * @param isbn            isbn of the book
+ * @param publicationYear publication year of the book
+ * @param available       true when the book can be rented out
+ * @param authorId        id of the author of the book
+ * @param authorName      name of the author of the book
+ * @param version         version of the book, changes on every update
+ */
+public record BookSummary(Long id, String title, String isbn, Integer publicationYear, Boolean available,
+                          Long authorId, String authorName, Long version) {
+}
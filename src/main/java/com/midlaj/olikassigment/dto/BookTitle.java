@@ -0,0 +1,11 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * Title and author of a book, read without loading the book entity
+ *
+ * @param id       id of the book
+ * @param title    title of the book
+ * @param authorId id of the author of the book
+ */
+public record BookTitle(Long id, String title, Long authorId) {
+}
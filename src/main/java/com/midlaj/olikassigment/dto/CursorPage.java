@@ -0,0 +1,12 @@
+package com.midlaj.olikassigment.dto;
+
+import java.util.List;
+
+/**
+ * A single page of a keyset (seek) paginated listing
+ *
+ * @param items      the rows of this page in ascending id order
+ * @param nextCursor opaque cursor for the following page, null when this is the last page
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
@@ -0,0 +1,41 @@
+package com.midlaj.olikassigment.dto;
+
+import com.midlaj.olikassigment.model.Author;
+import com.midlaj.olikassigment.model.Book;
+
+import java.time.Instant;
+
+/**
+ * Validators of an entity for conditional requests, read without loading the entity
+ *
+ * @param tag          opaque tag, changes whenever the entity or the entities shown with it change
+ * @param lastModified time of the last change
+ */
+public record EntityVersion(String tag, Instant lastModified) {
+
+    public EntityVersion(Long version, Instant updatedAt) {
+        this(String.valueOf(version), updatedAt);
+    }
+
+    /**
+     * Validators of an entity shown together with its owner, like a book with its author
+     */
+    public EntityVersion(Long version, Instant updatedAt, Long ownerVersion, Instant ownerUpdatedAt) {
+        this(version + "." + ownerVersion, updatedAt.isAfter(ownerUpdatedAt) ? updatedAt : ownerUpdatedAt);
+    }
+
+    /**
+     * Validators of a loaded book, the same as read by BookRepository.findVersionById
+     */
+    public static EntityVersion of(Book book) {
+        return new EntityVersion(book.getVersion(), book.getUpdatedAt(),
+                book.getAuthor().getVersion(), book.getAuthor().getUpdatedAt());
+    }
+
+    /**
+     * Validators of a loaded author, the same as read by AuthorRepository.findVersionById
+     */
+    public static EntityVersion of(Author author) {
+        return new EntityVersion(author.getVersion(), author.getUpdatedAt());
+    }
+}
@@ -0,0 +1,14 @@
+package com.midlaj.olikassigment.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record RentalBatchRequest(
+        @NotEmpty(message = "At least one rental is required")
+        @Size(max = 50, message = "At most 50 rentals can be created at once")
+        List<@Valid RentalRequest> rentals
+) {
+}
@@ -0,0 +1,16 @@
+package com.midlaj.olikassigment.dto;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Position of an open rental in the overdue listing, which is ordered by rental date and then by id
+ *
+ * @param rentalDate date the book was rented out
+ * @param id         id of the rental, breaks ties between rentals of the same day
+ */
+public record RentalDateKey(LocalDate rentalDate, Long id) {
+
+    public static final Comparator<RentalDateKey> ORDER = Comparator.comparing(RentalDateKey::rentalDate)
+            .thenComparing(RentalDateKey::id);
+}
@@ -0,0 +1,14 @@
+package com.midlaj.olikassigment.dto;
+
+import java.time.Instant;
+
+/**
+ * A select run again and again by one request, usually an association loaded one entity at a time (N+1)
+ *
+ * @param at         when the request completed
+ * @param request    method and path pattern of the request
+ * @param sql        statement text with its parameter markers
+ * @param executions number of times the request ran it
+ */
+public record RepeatedQuery(Instant at, String request, String sql, int executions) {
+}
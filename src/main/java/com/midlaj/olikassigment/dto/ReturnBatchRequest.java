@@ -0,0 +1,14 @@
+package com.midlaj.olikassigment.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record ReturnBatchRequest(
+        @NotEmpty(message = "At least one rental is required")
+        @Size(max = 50, message = "At most 50 rentals can be returned at once")
+        List<@NotNull(message = "Rental is required") Long> rentalIds
+) {
+}
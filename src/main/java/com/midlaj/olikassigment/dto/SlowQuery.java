@@ -0,0 +1,14 @@
+package com.midlaj.olikassigment.dto;
+
+import java.time.Instant;
+
+/**
+ * A statement that ran longer than the slow query threshold
+ *
+ * @param at             when it completed
+ * @param request        request that ran it, method and path pattern, or the thread name outside requests
+ * @param sql            statement text with its parameter markers
+ * @param durationMillis execution time
+ */
+public record SlowQuery(Instant at, String request, String sql, double durationMillis) {
+}
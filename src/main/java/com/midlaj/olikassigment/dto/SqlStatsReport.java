@@ -0,0 +1,16 @@
+package com.midlaj.olikassigment.dto;
+
+import java.util.List;
+
+/**
+ * Statements flagged by the sql statistics, newest first
+ *
+ * @param slowQueryThresholdMillis statements running longer are slow
+ * @param repeatedQueryThreshold   selects run this many times by one request are repeated
+ * @param slowQueryCount           slow statements since startup, including the ones no longer kept
+ * @param slowQueries              latest slow statements
+ * @param repeatedQueries          latest repeated selects
+ */
+public record SqlStatsReport(long slowQueryThresholdMillis, int repeatedQueryThreshold, long slowQueryCount,
+                             List<SlowQuery> slowQueries, List<RepeatedQuery> repeatedQueries) {
+}
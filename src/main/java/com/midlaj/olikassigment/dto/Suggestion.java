@@ -0,0 +1,11 @@
+package com.midlaj.olikassigment.dto;
+
+/**
+ * An autocomplete suggestion
+ *
+ * @param text title of a book or name of an author
+ * @param type BOOK or AUTHOR
+ * @param id   id of the book or of the author
+ */
+public record Suggestion(String text, String type, Long id) {
+}
@@ -0,0 +1,8 @@
+package com.midlaj.olikassigment.exception;
+
+public class EntityInUseException extends RuntimeException {
+
+    public EntityInUseException(String msg) {
+        super(msg);
+    }
+}
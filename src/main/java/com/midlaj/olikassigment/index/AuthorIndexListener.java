@@ -0,0 +1,39 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.model.Author;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Entity listener of Author keeping the author names of the book search index in sync with every insert
+ * and delete made through the persistence context. See BookIndexListener
+ */
+@Component
+public class AuthorIndexListener {
+
+    private final ObjectProvider<BookSearchIndex> bookSearchIndex;
+
+    public AuthorIndexListener(ObjectProvider<BookSearchIndex> bookSearchIndex) {
+        this.bookSearchIndex = bookSearchIndex;
+    }
+
+    @PostPersist
+    public void onPersist(Author author) {
+        bookSearchIndex.getObject().onAuthorCreated(author.getId(), author.getName());
+    }
+
+    @PostRemove
+    public void onRemove(Author author) {
+        onBulkDelete(author.getId());
+    }
+
+    /**
+     * Forgets an author deleted by a bulk delete, once the current transaction commits
+     * @param id
+     */
+    public void onBulkDelete(Long id) {
+        bookSearchIndex.getObject().onAuthorDeleted(id);
+    }
+}
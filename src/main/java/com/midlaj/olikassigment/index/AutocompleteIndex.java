@@ -0,0 +1,270 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.dto.AuthorName;
+import com.midlaj.olikassigment.dto.BookTitle;
+import com.midlaj.olikassigment.dto.Suggestion;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Type ahead over book titles and author names. Titles and names are case and accent folded and kept in
+ * a radix trie, where every node holds the best suggestions below it, so a keystroke is answered by
+ * walking down the typed prefix and reading that node.
+ * The trie is immutable. It is rebuilt in the background on a fixed delay and swapped in at once, so
+ * readers never wait and new books and authors show up with the next rebuild.
+ * Authors rank by their number of books, titles come after authors with the same prefix.
+ */
+@Component
+public class AutocompleteIndex {
+
+    public static final String BOOK = "BOOK";
+
+    public static final String AUTHOR = "AUTHOR";
+
+    private final BookRepository bookRepository;
+
+    private final AuthorRepository authorRepository;
+
+    private final boolean enabled;
+
+    private final int suggestionsPerNode;
+
+    private final AtomicReference<Trie> trie = new AtomicReference<>();
+
+    public AutocompleteIndex(BookRepository bookRepository, AuthorRepository authorRepository,
+                             @Value("${library.autocomplete.enabled:false}") boolean enabled,
+                             @Value("${library.autocomplete.suggestions-per-node:10}") int suggestionsPerNode) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.enabled = enabled;
+        this.suggestionsPerNode = suggestionsPerNode;
+    }
+
+    /**
+     * Builds a new trie from every title and author name and swaps it in. The titles are read from the
+     * primary, a read only transaction would go to a replica
+     */
+    @Scheduled(initialDelayString = "${library.autocomplete.initial-delay:PT0S}",
+            fixedDelayString = "${library.autocomplete.rebuild-interval:PT5M}")
+    @Transactional
+    public void rebuild() {
+        if (!enabled) return;
+
+        List<Entry> entries = new ArrayList<>();
+        Map<Long, Integer> booksPerAuthor = new HashMap<>();
+        try (Stream<BookTitle> books = bookRepository.streamTitles()) {
+            books.forEach(book -> {
+                entries.add(new Entry(book.title(), BOOK, book.id(), 0));
+                booksPerAuthor.merge(book.authorId(), 1, Integer::sum);
+            });
+        }
+        try (Stream<AuthorName> authors = authorRepository.streamNames()) {
+            authors.forEach(author -> entries.add(new Entry(author.name(), AUTHOR, author.id(),
+                    1 + booksPerAuthor.getOrDefault(author.id(), 0))));
+        }
+
+        trie.set(Trie.build(entries, suggestionsPerNode));
+    }
+
+    /**
+     * @return true when the trie is built
+     */
+    public boolean isReady() {
+        return trie.get() != null;
+    }
+
+    /**
+     * Suggests titles and author names starting with the prefix
+     * @param prefix typed text
+     * @param limit maximum number of suggestions, at most the suggestions kept per node
+     * @return suggestions, best first
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Trie current = trie.get();
+        String key = Tokenizer.fold(prefix);
+        if (current == null || key.isEmpty()) return Collections.emptyList();
+
+        return current.suggest(key, limit);
+    }
+
+    private record Entry(String text, String type, Long id, int weight) {
+
+        static final Comparator<Entry> RANK = Comparator.comparingInt(Entry::weight).reversed()
+                .thenComparing(Entry::text);
+    }
+
+    /**
+     * Immutable radix trie, every edge holds a run of characters and every node the indexes of its best entries
+     */
+    private static final class Trie {
+
+        private final Entry[] entries;
+
+        private final Node root;
+
+        private Trie(Entry[] entries, Node root) {
+            this.entries = entries;
+            this.root = root;
+        }
+
+        static Trie build(List<Entry> entries, int suggestionsPerNode) {
+            Entry[] ranked = entries.toArray(Entry[]::new);
+            Arrays.sort(ranked, Entry.RANK);
+
+            /**
+             * Entries are inserted best first, so the first entries reaching a node are its best ones
+             */
+            Node root = new Node("");
+            for (int i = 0; i < ranked.length; i++) {
+                String key = Tokenizer.fold(ranked[i].text());
+                if (!key.isEmpty()) {
+                    root.insert(key, i, suggestionsPerNode);
+                }
+            }
+            root.freeze();
+            return new Trie(ranked, root);
+        }
+
+        List<Suggestion> suggest(String key, int limit) {
+            Node node = root;
+            int position = 0;
+            while (position < key.length()) {
+                node = node.child(key.charAt(position));
+                if (node == null) return Collections.emptyList();
+
+                /**
+                 * The key may end inside the edge, it has to agree with the edge up to there
+                 */
+                int length = Math.min(node.label.length(), key.length() - position);
+                if (!key.regionMatches(position, node.label, 0, length)) return Collections.emptyList();
+                position += length;
+            }
+
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, node.top.length));
+            for (int i = 0; i < node.top.length && i < limit; i++) {
+                Entry entry = entries[node.top[i]];
+                suggestions.add(new Suggestion(entry.text(), entry.type(), entry.id()));
+            }
+            return suggestions;
+        }
+    }
+
+    private static final class Node {
+
+        private String label;
+
+        private char[] firstChars = new char[0];
+
+        private Node[] children = new Node[0];
+
+        private int[] top = new int[0];
+
+        private int topSize;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(firstChars, c);
+            return index < 0 ? null : children[index];
+        }
+
+        void insert(String key, int entry, int suggestionsPerNode) {
+            Node node = this;
+            int position = 0;
+            node.offer(entry, suggestionsPerNode);
+            while (position < key.length()) {
+                char c = key.charAt(position);
+                int index = Arrays.binarySearch(node.firstChars, c);
+                if (index < 0) {
+                    Node leaf = new Node(key.substring(position));
+                    leaf.offer(entry, suggestionsPerNode);
+                    node.addChild(-index - 1, c, leaf);
+                    return;
+                }
+
+                Node child = node.children[index];
+                int common = commonPrefix(child.label, key, position);
+                if (common < child.label.length()) {
+                    child = split(node, index, common);
+                }
+                child.offer(entry, suggestionsPerNode);
+                node = child;
+                position += common;
+            }
+        }
+
+        /**
+         * Splits the edge to a child after the common characters, the new middle node takes over the
+         * suggestions of the child since every entry below the child is also below it
+         */
+        private static Node split(Node parent, int index, int common) {
+            Node child = parent.children[index];
+            Node middle = new Node(child.label.substring(0, common));
+            middle.top = Arrays.copyOf(child.top, child.top.length);
+            middle.topSize = child.topSize;
+            child.label = child.label.substring(common);
+            middle.firstChars = new char[]{child.label.charAt(0)};
+            middle.children = new Node[]{child};
+            parent.children[index] = middle;
+            return middle;
+        }
+
+        private void addChild(int index, char c, Node child) {
+            char[] chars = new char[firstChars.length + 1];
+            Node[] nodes = new Node[children.length + 1];
+            System.arraycopy(firstChars, 0, chars, 0, index);
+            System.arraycopy(children, 0, nodes, 0, index);
+            chars[index] = c;
+            nodes[index] = child;
+            System.arraycopy(firstChars, index, chars, index + 1, firstChars.length - index);
+            System.arraycopy(children, index, nodes, index + 1, children.length - index);
+            firstChars = chars;
+            children = nodes;
+        }
+
+        private void offer(int entry, int suggestionsPerNode) {
+            if (topSize == suggestionsPerNode) return;
+            if (topSize == top.length) {
+                top = Arrays.copyOf(top, Math.min(suggestionsPerNode, Math.max(2, topSize * 2)));
+            }
+            top[topSize++] = entry;
+        }
+
+        /**
+         * Trims the suggestion arrays to their size
+         */
+        void freeze() {
+            if (top.length != topSize) {
+                top = Arrays.copyOf(top, topSize);
+            }
+            for (Node child : children) {
+                child.freeze();
+            }
+        }
+
+        private static int commonPrefix(String label, String key, int position) {
+            int length = Math.min(label.length(), key.length() - position);
+            int i = 0;
+            while (i < length && label.charAt(i) == key.charAt(position + i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
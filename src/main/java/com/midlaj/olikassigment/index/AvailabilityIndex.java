@@ -0,0 +1,254 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.dto.BookAvailability;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In memory availability of every book, as three compressed bitmaps of book ids: every book, the
+ * available books and the rented books. Availability checks and counts are answered without a query
+ * and the available or rented ids are read in id order for paging, each from its own bitmap.
+ * It is loaded once the application is ready and then kept up to date by the rental service on every
+ * checkout and return and by BookIndexListener on every book insert and delete, applied only after
+ * the transaction commits. Changes arriving while it loads are replayed on top of the loaded state.
+ * The index only sees the writes of this instance, the conditional update of checkout stays the final guard.
+ */
+@Component
+public class AvailabilityIndex {
+
+    private final BookRepository bookRepository;
+
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final CompressedBitmap books = new CompressedBitmap();
+
+    private final CompressedBitmap available = new CompressedBitmap();
+
+    private final CompressedBitmap rented = new CompressedBitmap();
+
+    private final List<Runnable> changesWhileLoading = new ArrayList<>();
+
+    private boolean loading;
+
+    private volatile boolean ready;
+
+    public AvailabilityIndex(BookRepository bookRepository,
+                             @Value("${library.availability-index.enabled:false}") boolean enabled) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Loads the availability of every book, from the primary, a read only transaction would go to a replica
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        if (!enabled) return;
+
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try (Stream<BookAvailability> availabilities = bookRepository.streamAvailability()) {
+            availabilities.forEach(book -> {
+                lock.writeLock().lock();
+                try {
+                    set(book.bookId(), book.available());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+
+        lock.writeLock().lock();
+        try {
+            loading = false;
+            changesWhileLoading.forEach(Runnable::run);
+            changesWhileLoading.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    /**
+     * @return true when the index can answer availability queries
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @param bookId
+     * @return true when the book exists
+     */
+    public boolean exists(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return books.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param bookId
+     * @return true when the book exists and is not rented out
+     */
+    public boolean isAvailable(Long bookId) {
+        lock.readLock().lock();
+        try {
+            return available.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long countAvailable() {
+        lock.readLock().lock();
+        try {
+            return available.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long countRented() {
+        lock.readLock().lock();
+        try {
+            return rented.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the ids of available books in id order
+     * @param afterId the ids start after it
+     * @param limit maximum number of ids
+     * @return book ids
+     */
+    public List<Long> findAvailableIds(long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(limit);
+            for (long id = available.next(afterId + 1); id >= 0 && ids.size() < limit; id = available.next(id + 1)) {
+                ids.add(id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the ids of rented books in id order
+     * @param afterId the ids start after it
+     * @param limit maximum number of ids
+     * @return book ids
+     */
+    public List<Long> findRentedIds(long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(limit);
+            for (long id = rented.next(afterId + 1); id >= 0 && ids.size() < limit; id = rented.next(id + 1)) {
+                ids.add(id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an inserted book once the current transaction commits
+     * @param bookId
+     * @param isAvailable
+     */
+    public void onBookCreated(Long bookId, Boolean isAvailable) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> write(() -> set(bookId, isAvailable)));
+    }
+
+    /**
+     * Removes a deleted book once the current transaction commits
+     * @param bookId
+     */
+    public void onBookDeleted(Long bookId) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> write(() -> {
+            books.remove(bookId);
+            available.remove(bookId);
+            rented.remove(bookId);
+        }));
+    }
+
+    /**
+     * Marks a book rented out once the current transaction commits
+     * @param bookId
+     */
+    public void onRented(Long bookId) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> write(() -> {
+            if (books.contains(bookId)) set(bookId, false);
+        }));
+    }
+
+    /**
+     * Marks a book available again once the current transaction commits
+     * @param bookId
+     */
+    public void onReturned(Long bookId) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> write(() -> {
+            if (books.contains(bookId)) set(bookId, true);
+        }));
+    }
+
+    /**
+     * Has to be called holding the write lock
+     */
+    private void set(Long bookId, Boolean isAvailable) {
+        books.add(bookId);
+        if (Boolean.TRUE.equals(isAvailable)) {
+            available.add(bookId);
+            rented.remove(bookId);
+        } else {
+            available.remove(bookId);
+            rented.add(bookId);
+        }
+    }
+
+    /**
+     * Applies a change under the write lock, changes arriving while loading are also kept for replay
+     */
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (loading) changesWhileLoading.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
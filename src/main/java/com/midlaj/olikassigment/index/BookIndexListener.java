@@ -0,0 +1,64 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.dto.BookIsbn;
+import com.midlaj.olikassigment.model.Book;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Entity listener of Book keeping the in memory book indexes in sync with every insert and delete made
+ * through the persistence context, including books inserted by the import and books removed with their
+ * author. Bulk deletes bypass it and report the deleted books through onBulkDelete.
+ * Hibernate gets it from the spring context while the entity manager factory is being built, so the
+ * indexes, which need repositories, are only looked up when an entity event arrives.
+ */
+@Component
+public class BookIndexListener {
+
+    private final ObjectProvider<IsbnIndex> isbnIndex;
+
+    private final ObjectProvider<BookSearchIndex> bookSearchIndex;
+
+    private final ObjectProvider<AvailabilityIndex> availabilityIndex;
+
+    public BookIndexListener(ObjectProvider<IsbnIndex> isbnIndex, ObjectProvider<BookSearchIndex> bookSearchIndex,
+                             ObjectProvider<AvailabilityIndex> availabilityIndex) {
+        this.isbnIndex = isbnIndex;
+        this.bookSearchIndex = bookSearchIndex;
+        this.availabilityIndex = availabilityIndex;
+    }
+
+    /**
+     * Only the id of the author is read, so an author reference is not loaded
+     * @param book
+     */
+    @PostPersist
+    public void onPersist(Book book) {
+        isbnIndex.getObject().onCreated(book.getId(), book.getIsbn());
+        bookSearchIndex.getObject().onBookCreated(book.getId(), book.getTitle(), book.getAuthor().getId());
+        availabilityIndex.getObject().onBookCreated(book.getId(), book.getAvailable());
+    }
+
+    @PostRemove
+    public void onRemove(Book book) {
+        onRemove(book.getId(), book.getIsbn());
+    }
+
+    /**
+     * Removes books deleted by a bulk delete from the indexes, once the current transaction commits
+     * @param books id and isbn of every deleted book
+     */
+    public void onBulkDelete(List<BookIsbn> books) {
+        books.forEach(book -> onRemove(book.id(), book.isbn()));
+    }
+
+    private void onRemove(Long id, String isbn) {
+        isbnIndex.getObject().onDeleted(isbn);
+        bookSearchIndex.getObject().onBookDeleted(id);
+        availabilityIndex.getObject().onBookDeleted(id);
+    }
+}
@@ -0,0 +1,504 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.dto.AuthorName;
+import com.midlaj.olikassigment.dto.BookTitle;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In memory inverted index of book titles and author names. Every book is a document made of the tokens
+ * of its title and of its author's name, and every token points to the documents holding it. Queries
+ * are ranked with BM25 and their last token also matches as a prefix, so results show up while typing.
+ * It is loaded once the application is ready and then kept up to date by BookIndexListener and
+ * AuthorIndexListener on every insert and delete, applied only after the transaction commits.
+ * Deleted books are marked as deleted and skipped by queries until a quarter of the documents are deleted,
+ * then the postings are compacted. Term weights only count the books still indexed.
+ * The index only sees the writes of this instance, an author it does not know is read from the database.
+ */
+@Component
+public class BookSearchIndex {
+
+    /**
+     * A search hit
+     *
+     * @param bookId id of the book
+     * @param score  BM25 score, higher is better
+     */
+    public record Hit(long bookId, float score) {
+    }
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    /**
+     * Terms matched by the prefix of the last query token score less than an exact match
+     */
+    private static final float PREFIX_WEIGHT = 0.8f;
+
+    private static final int MAX_PREFIX_TERMS = 64;
+
+    private final BookRepository bookRepository;
+
+    private final AuthorRepository authorRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+
+    private final Map<Long, String> authorNames = new HashMap<>();
+
+    /**
+     * Document number of every indexed book
+     */
+    private final LongLongHashMap documents = new LongLongHashMap(1024);
+
+    private long[] bookIds = new long[1024];
+
+    private int[] lengths = new int[1024];
+
+    /**
+     * Postings of the distinct tokens of every document, to update their live counts when it is deleted
+     */
+    private Postings[][] documentTerms = new Postings[1024][];
+
+    private final BitSet deleted = new BitSet();
+
+    private int deletedCount;
+
+    private int documentCount;
+
+    private int liveCount;
+
+    private long totalLength;
+
+    /**
+     * Books deleted while the index is loading, they may still be read by the load
+     */
+    private final Set<Long> deletedWhileLoading = new HashSet<>();
+
+    private volatile boolean loading;
+
+    private volatile boolean ready;
+
+    public BookSearchIndex(BookRepository bookRepository, AuthorRepository authorRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${library.search-index.enabled:false}") boolean enabled) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.enabled = enabled;
+
+        /**
+         * Authors are read after the commit of the book, when the committed transaction can not be joined
+         */
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Loads every author name and every book into the index, from the primary, a read only transaction
+     * would go to a replica
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        if (!enabled) return;
+
+        loading = true;
+        try (Stream<AuthorName> authors = authorRepository.streamNames()) {
+            authors.forEach(author -> addAuthor(author.id(), author.name()));
+        }
+        try (Stream<BookTitle> books = bookRepository.streamTitles()) {
+            books.forEach(book -> addBook(book.id(), book.title(), book.authorId()));
+        }
+
+        lock.writeLock().lock();
+        try {
+            deletedWhileLoading.forEach(this::removeBook);
+            deletedWhileLoading.clear();
+            loading = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    /**
+     * @return true when the index can answer searches
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Finds the best matching books of a query
+     * @param query free text, the last token also matches as a prefix
+     * @param limit maximum number of hits
+     * @return hits, best first
+     */
+    public List<Hit> search(String query, int limit) {
+        List<String> tokens = Tokenizer.tokenize(query);
+        if (tokens.isEmpty()) return Collections.emptyList();
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) return Collections.emptyList();
+
+            float averageLength = (float) totalLength / liveCount;
+            ScoreAccumulator scores = new ScoreAccumulator();
+
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if (i < tokens.size() - 1) {
+                    score(terms.get(token), 1f, averageLength, scores);
+                    continue;
+                }
+
+                int expanded = 0;
+                for (Map.Entry<String, Postings> term : terms.tailMap(token, true).entrySet()) {
+                    if (!term.getKey().startsWith(token)) break;
+                    if (term.getValue().live == 0) continue;
+                    if (expanded++ == MAX_PREFIX_TERMS) break;
+                    score(term.getValue(), term.getKey().length() == token.length() ? 1f : PREFIX_WEIGHT, averageLength, scores);
+                }
+            }
+            return scores.top(limit, bookIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an inserted book once the current transaction commits
+     * @param id
+     * @param title
+     * @param authorId
+     */
+    public void onBookCreated(Long id, String title, Long authorId) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> addBook(id, title, authorId));
+    }
+
+    /**
+     * Marks a deleted book as deleted once the current transaction commits
+     * @param id
+     */
+    public void onBookDeleted(Long id) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                removeBook(id);
+                if (loading) deletedWhileLoading.add(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Remembers the name of an inserted author once the current transaction commits, books of the
+     * author are indexed with it
+     * @param id
+     * @param name
+     */
+    public void onAuthorCreated(Long id, String name) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> addAuthor(id, name));
+    }
+
+    /**
+     * Forgets a deleted author once the current transaction commits, its books are deleted on their own
+     * @param id
+     */
+    public void onAuthorDeleted(Long id) {
+        if (!enabled) return;
+
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                authorNames.remove(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void addAuthor(Long id, String name) {
+        lock.writeLock().lock();
+        try {
+            authorNames.put(id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addBook(Long id, String title, Long authorId) {
+        String authorName = authorName(authorId);
+
+        lock.writeLock().lock();
+        try {
+            if (documents.get(id) != LongLongHashMap.NO_VALUE) return;
+
+            List<String> tokens = Tokenizer.tokenize(title);
+            tokens.addAll(Tokenizer.tokenize(authorName));
+
+            int document = documentCount++;
+            if (document == bookIds.length) {
+                bookIds = Arrays.copyOf(bookIds, document * 2);
+                lengths = Arrays.copyOf(lengths, document * 2);
+                documentTerms = Arrays.copyOf(documentTerms, document * 2);
+            }
+            bookIds[document] = id;
+            lengths[document] = tokens.size();
+            documents.put(id, document);
+            liveCount++;
+            totalLength += tokens.size();
+
+            /**
+             * Count the frequency of every token, then append the document to the postings of each token
+             */
+            Map<String, Integer> frequencies = new HashMap<>();
+            tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+            Postings[] postings = new Postings[frequencies.size()];
+            int next = 0;
+            for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+                postings[next] = terms.computeIfAbsent(frequency.getKey(), t -> new Postings());
+                postings[next++].add(document, frequency.getValue());
+            }
+            documentTerms[document] = postings;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Name of an author. An author the index does not know, written through another instance or committed
+     * after the load read the authors, is read from the database and remembered
+     */
+    private String authorName(Long authorId) {
+        if (authorId == null) return null;
+
+        lock.readLock().lock();
+        try {
+            String name = authorNames.get(authorId);
+            if (name != null) return name;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        String name = transactionTemplate.execute(status -> authorRepository.findNameById(authorId).orElse(null));
+        if (name != null) addAuthor(authorId, name);
+        return name;
+    }
+
+    /**
+     * Has to be called holding the write lock
+     */
+    private void removeBook(Long id) {
+        long document = documents.get(id);
+        if (document == LongLongHashMap.NO_VALUE) return;
+
+        documents.remove(id);
+        deleted.set((int) document);
+        deletedCount++;
+        liveCount--;
+        totalLength -= lengths[(int) document];
+        for (Postings postings : documentTerms[(int) document]) {
+            postings.live--;
+        }
+        documentTerms[(int) document] = null;
+
+        /**
+         * Queries skip at most a quarter of the documents, and every compaction is paid for by the deletes
+         * since the previous one
+         */
+        if (deletedCount * 4 > documentCount) {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the deleted documents from the postings and numbers the remaining ones again from 0, in the
+     * same order so postings stay sorted. Terms left without documents are dropped.
+     * Has to be called holding the write lock
+     */
+    private void compact() {
+        int[] renumbered = new int[documentCount];
+        int next = 0;
+        for (int document = 0; document < documentCount; document++) {
+            if (deleted.get(document)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = next;
+            bookIds[next] = bookIds[document];
+            lengths[next] = lengths[document];
+            documentTerms[next] = documentTerms[document];
+            documents.put(bookIds[next], next);
+            next++;
+        }
+        Arrays.fill(documentTerms, next, documentCount, null);
+        terms.values().removeIf(postings -> postings.compact(renumbered));
+
+        documentCount = next;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private void score(Postings postings, float weight, float averageLength, ScoreAccumulator scores) {
+        if (postings == null || postings.live == 0) return;
+
+        float idf = (float) Math.log(1 + (liveCount - postings.live + 0.5) / (postings.live + 0.5));
+        for (int i = 0; i < postings.size; i++) {
+            int document = postings.documents[i];
+            if (deleted.get(document)) continue;
+
+            float frequency = postings.frequencies[i];
+            float norm = K1 * (1 - B + B * lengths[document] / averageLength);
+            scores.add(document, weight * idf * frequency * (K1 + 1) / (frequency + norm));
+        }
+    }
+
+    /**
+     * Documents holding a term with the term frequency in each, in insertion order. Deleted documents stay
+     * until the next compaction, live counts only the others
+     */
+    private static final class Postings {
+
+        private int[] documents = new int[2];
+
+        private int[] frequencies = new int[2];
+
+        private int size;
+
+        private int live;
+
+        void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        /**
+         * @param renumbered new number of every document, -1 for deleted ones
+         * @return true when no document is left
+         */
+        boolean compact(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int document = renumbered[documents[i]];
+                if (document < 0) continue;
+                documents[kept] = document;
+                frequencies[kept] = frequencies[i];
+                kept++;
+            }
+            size = kept;
+            if (size > 0 && size * 4 < documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            return size == 0;
+        }
+    }
+
+    /**
+     * Open addressing map of document number to score, summing the score of every matched term
+     */
+    private static final class ScoreAccumulator {
+
+        private int[] documents = new int[64];
+
+        private float[] scores = new float[64];
+
+        private boolean[] used = new boolean[64];
+
+        private int size;
+
+        void add(int document, float score) {
+            if (size * 2 >= documents.length) grow();
+
+            int mask = documents.length - 1;
+            int slot = LongLongHashMap.mix(document) & mask;
+            while (used[slot] && documents[slot] != document) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                documents[slot] = document;
+                size++;
+            }
+            scores[slot] += score;
+        }
+
+        List<Hit> top(int limit, long[] bookIds) {
+            PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> Float.compare(scores[a], scores[b]));
+            for (int slot = 0; slot < used.length; slot++) {
+                if (!used[slot]) continue;
+                if (best.size() < limit) {
+                    best.add(slot);
+                } else if (scores[slot] > scores[best.peek()]) {
+                    best.poll();
+                    best.add(slot);
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                int slot = best.poll();
+                hits.add(new Hit(bookIds[documents[slot]], scores[slot]));
+            }
+            Collections.reverse(hits);
+            return hits;
+        }
+
+        private void grow() {
+            int[] oldDocuments = documents;
+            float[] oldScores = scores;
+            boolean[] oldUsed = used;
+            documents = new int[oldDocuments.length * 2];
+            scores = new float[oldDocuments.length * 2];
+            used = new boolean[oldDocuments.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldUsed.length; slot++) {
+                if (oldUsed[slot]) add(oldDocuments[slot], oldScores[slot]);
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.midlaj.olikassigment.index;
+
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of non negative long ids in the roaring layout. Ids are split into their high bits,
+ * which pick a container, and their low 16 bits, which are stored in it. A container holds a sorted short
+ * array while it has at most 4096 ids and a 65536 bit bitmap once it has more, so sparse and dense id
+ * ranges both stay small. Containers are kept sorted by their high bits.
+ * Not thread safe, AvailabilityIndex guards it.
+ */
+class CompressedBitmap {
+
+    /**
+     * Ids are supported up to 2^47, far beyond what the id sequences reach
+     */
+    static final long MAX_ID = (1L << 47) - 1;
+
+    private static final int ARRAY_MAX = 4096;
+
+    private int[] keys = new int[4];
+
+    private Container[] containers = new Container[4];
+
+    private int size;
+
+    private long cardinality;
+
+    static boolean supports(long id) {
+        return id >= 0 && id <= MAX_ID;
+    }
+
+    boolean contains(long id) {
+        if (!supports(id)) return false;
+
+        int index = Arrays.binarySearch(keys, 0, size, (int) (id >>> 16));
+        return index >= 0 && containers[index].contains((int) (id & 0xFFFF));
+    }
+
+    void add(long id) {
+        if (!supports(id)) return;
+
+        int key = (int) (id >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((int) (id & 0xFFFF));
+        cardinality += containers[index].cardinality() - before;
+    }
+
+    void remove(long id) {
+        if (!supports(id)) return;
+
+        int index = Arrays.binarySearch(keys, 0, size, (int) (id >>> 16));
+        if (index < 0) return;
+
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.remove((int) (id & 0xFFFF));
+        cardinality += containers[index].cardinality() - before;
+        if (containers[index].cardinality() == 0) {
+            removeContainer(index);
+        }
+    }
+
+    long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @param from
+     * @return the smallest id in the bitmap not below from, -1 when there is none
+     */
+    long next(long from) {
+        if (from > MAX_ID) return -1;
+        long start = Math.max(0, from);
+
+        int key = (int) (start >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            int low = containers[index].next((int) (start & 0xFFFF));
+            if (low >= 0) return ((long) key << 16) | low;
+            index++;
+        } else {
+            index = -index - 1;
+        }
+        return index < size ? ((long) keys[index] << 16) | containers[index].next(0) : -1;
+    }
+
+    private void insertContainer(int index, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    /**
+     * Low 16 bits of the ids sharing the same high bits
+     */
+    private interface Container {
+
+        boolean contains(int low);
+
+        /**
+         * @return this container or the container replacing it
+         */
+        Container add(int low);
+
+        /**
+         * @return this container or the container replacing it
+         */
+        Container remove(int low);
+
+        int cardinality();
+
+        /**
+         * @return the smallest value not below from, -1 when there is none
+         */
+        int next(int from);
+    }
+
+    private static final class ArrayContainer implements Container {
+
+        private char[] values = new char[4];
+
+        private int cardinality;
+
+        @Override
+        public boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, cardinality, (char) low) >= 0;
+        }
+
+        @Override
+        public Container add(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (index >= 0) return this;
+
+            if (cardinality == ARRAY_MAX) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int i = 0; i < cardinality; i++) {
+                    bitmap.add(values[i]);
+                }
+                return bitmap.add(low);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = (char) low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Container remove(int low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (index < 0) return this;
+
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public int next(int from) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (index < 0) index = -index - 1;
+            return index < cardinality ? values[index] : -1;
+        }
+    }
+
+    private static final class BitmapContainer implements Container {
+
+        private final long[] words = new long[1024];
+
+        private int cardinality;
+
+        @Override
+        public boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container add(int low) {
+            if (!contains(low)) {
+                words[low >>> 6] |= 1L << low;
+                cardinality++;
+            }
+            return this;
+        }
+
+        /**
+         * Turns back into an array container once it is well below the array limit, so a container
+         * hovering around the limit does not convert back and forth
+         */
+        @Override
+        public Container remove(int low) {
+            if (contains(low)) {
+                words[low >>> 6] &= ~(1L << low);
+                cardinality--;
+            }
+            if (cardinality > ARRAY_MAX / 2) return this;
+
+            ArrayContainer array = new ArrayContainer();
+            for (int value = next(0); value >= 0; value = next(value + 1)) {
+                array.add(value);
+            }
+            return array;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public int next(int from) {
+            if (from >= 65536) return -1;
+
+            int word = from >>> 6;
+            long bits = words[word] & (-1L << from);
+            while (true) {
+                if (bits != 0) return word * 64 + Long.numberOfTrailingZeros(bits);
+                if (++word == words.length) return -1;
+                bits = words[word];
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.dto.BookIsbn;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+/**
+ * In memory index of book ids by isbn. Isbn-13 numbers are packed into primitive longs and kept in an open
+ * addressing map, with a bloom filter in front of it, so resolving an isbn neither allocates nor touches
+ * the database. It is loaded once the application is ready and then kept up to date by BookIndexListener
+ * on every book insert and delete, applied only after the transaction commits.
+ * Isbns not written as 13 plain digits are not indexed and always answered as UNKNOWN.
+ * The index only sees the writes of this instance, the unique isbn constraint stays the final guard. It is
+ * only used when this is the single instance writing books: with several instances another one may add an
+ * isbn the index answers as MISSING, or delete a book the index still holds, so neither answer could be
+ * trusted. The index is then not loaded and answers every isbn as UNKNOWN, like a disabled one. The map
+ * and the bloom filter are only allocated when the index is used.
+ */
+@Component
+public class IsbnIndex {
+
+    /**
+     * The isbn can not be answered by the index, the database has to be asked
+     */
+    public static final long UNKNOWN = 0L;
+
+    /**
+     * No book has the isbn
+     */
+    public static final long MISSING = -1L;
+
+    private final BookRepository bookRepository;
+
+    private final boolean enabled;
+
+    private final double falsePositiveRate;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final LongLongHashMap books;
+
+    private volatile LongBloomFilter bloomFilter;
+
+    private long bloomFilterCapacity;
+
+    /**
+     * Isbns deleted while the index is loading, they may still be read by the load
+     */
+    private final Set<Long> deletedWhileLoading = new HashSet<>();
+
+    private volatile boolean loading;
+
+    private volatile boolean ready;
+
+    public IsbnIndex(BookRepository bookRepository,
+                     @Value("${library.isbn-index.enabled:false}") boolean enabled,
+                     @Value("${library.isbn-index.single-instance:false}") boolean singleInstance,
+                     @Value("${library.isbn-index.expected-books:1000000}") int expectedBooks,
+                     @Value("${library.isbn-index.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.bookRepository = bookRepository;
+        this.enabled = enabled && singleInstance;
+        this.falsePositiveRate = falsePositiveRate;
+        this.books = this.enabled ? new LongLongHashMap(expectedBooks) : null;
+        this.bloomFilter = this.enabled ? new LongBloomFilter(expectedBooks, falsePositiveRate) : null;
+        this.bloomFilterCapacity = expectedBooks;
+    }
+
+    /**
+     * Loads the isbn of every book into the index. Not read only, so it reads the primary and not a replica
+     * that may lag behind the changes the index is kept up to date with
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        if (!enabled) return;
+
+        loading = true;
+        try (Stream<BookIsbn> isbns = bookRepository.streamIsbns()) {
+            isbns.forEach(book -> add(pack(book.isbn()), book.id()));
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            deletedWhileLoading.forEach(books::remove);
+            deletedWhileLoading.clear();
+            loading = false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        ready = true;
+    }
+
+    /**
+     * @return true when the index can answer isbn lookups
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Resolves an isbn to the id of its book
+     * @param isbn
+     * @return id of the book, MISSING when no book has the isbn, UNKNOWN when the index can not answer
+     */
+    public long lookup(String isbn) {
+        long key = pack(isbn);
+        if (!ready || key == UNKNOWN) return UNKNOWN;
+
+        /**
+         * A bloom filter miss answers without probing the map
+         */
+        if (!bloomFilter.mightContain(key)) return MISSING;
+
+        long stamp = lock.tryOptimisticRead();
+        long id = books.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                id = books.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return id == LongLongHashMap.NO_VALUE ? MISSING : id;
+    }
+
+    /**
+     * Adds an inserted book to the index once the current transaction commits
+     * @param id
+     * @param isbn
+     */
+    public void onCreated(Long id, String isbn) {
+        long key = pack(isbn);
+        if (!enabled || key == UNKNOWN) return;
+
+        AfterCommit.run(() -> add(key, id));
+    }
+
+    /**
+     * Removes a deleted book from the index once the current transaction commits
+     * @param isbn
+     */
+    public void onDeleted(String isbn) {
+        long key = pack(isbn);
+        if (!enabled || key == UNKNOWN) return;
+
+        AfterCommit.run(() -> {
+            long stamp = lock.writeLock();
+            try {
+                books.remove(key);
+                if (loading) deletedWhileLoading.add(key);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        });
+    }
+
+    private void add(long key, long id) {
+        if (key == UNKNOWN) return;
+
+        long stamp = lock.writeLock();
+        try {
+            books.put(key, id);
+
+            /**
+             * Rebuild the bloom filter with twice the room once it holds more keys than it was sized for
+             */
+            if (books.size() > bloomFilterCapacity) {
+                rebuildBloomFilter();
+            }
+            bloomFilter.add(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void rebuildBloomFilter() {
+        bloomFilterCapacity = 2L * books.size();
+        LongBloomFilter rebuilt = new LongBloomFilter(bloomFilterCapacity, falsePositiveRate);
+        books.forEachKey(rebuilt::add);
+        bloomFilter = rebuilt;
+    }
+
+    /**
+     * Packs an isbn-13 into a long, the isbn plus one so that no isbn packs to the empty key 0
+     * @param isbn
+     * @return packed isbn, UNKNOWN when it is not 13 plain digits
+     */
+    static long pack(String isbn) {
+        if (isbn == null || isbn.length() != 13) return UNKNOWN;
+
+        long value = 0;
+        for (int i = 0; i < 13; i++) {
+            char c = isbn.charAt(i);
+            if (c < '0' || c > '9') return UNKNOWN;
+            value = value * 10 + (c - '0');
+        }
+        return value + 1;
+    }
+}
@@ -0,0 +1,134 @@
+package com.midlaj.olikassigment.index;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing hash map of primitive long keys to long values with linear probing, so lookups neither
+ * box nor allocate. Keys and values are interleaved in one array, which a reader captures once and so
+ * always sees a consistent table even while a writer grows it.
+ * Key 0 marks an empty slot and can not be stored. Not thread safe for writers, IsbnIndex guards it.
+ */
+class LongLongHashMap {
+
+    static final long NO_VALUE = -1L;
+
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] table;
+
+    private int size;
+
+    LongLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) Math.min(1 << 29, expectedSize / MAX_LOAD)) - 1) << 1;
+        this.table = new long[capacity * 2];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key
+     * @return value of the key, NO_VALUE when absent
+     */
+    long get(long key) {
+        long[] slots = table;
+        int mask = slots.length / 2 - 1;
+        int slot = mix(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = slots[slot * 2];
+            if (current == key) return slots[slot * 2 + 1];
+            if (current == 0) return NO_VALUE;
+            slot = (slot + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    void put(long key, long value) {
+        if ((size + 1) > (table.length / 2) * MAX_LOAD) {
+            grow();
+        }
+        if (insert(table, key, value)) {
+            size++;
+        }
+    }
+
+    /**
+     * Removes the key and shifts the following entries of its probe sequence back, so no tombstones are left
+     * @param key
+     */
+    void remove(long key) {
+        long[] slots = table;
+        int mask = slots.length / 2 - 1;
+        int slot = mix(key) & mask;
+        while (slots[slot * 2] != key) {
+            if (slots[slot * 2] == 0) return;
+            slot = (slot + 1) & mask;
+        }
+
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (slots[next * 2] != 0) {
+            int home = mix(slots[next * 2]) & mask;
+
+            /**
+             * The entry can fill the gap when its home slot is not between the gap and its current slot
+             */
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slots[gap * 2] = slots[next * 2];
+                slots[gap * 2 + 1] = slots[next * 2 + 1];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[gap * 2] = 0;
+        slots[gap * 2 + 1] = 0;
+        size--;
+    }
+
+    void forEachKey(LongConsumer consumer) {
+        long[] slots = table;
+        for (int i = 0; i < slots.length; i += 2) {
+            if (slots[i] != 0) {
+                consumer.accept(slots[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] old = table;
+        long[] grown = new long[old.length * 2];
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0) {
+                insert(grown, old[i], old[i + 1]);
+            }
+        }
+        table = grown;
+    }
+
+    /**
+     * @return true when the key was not present
+     */
+    private static boolean insert(long[] slots, long key, long value) {
+        int mask = slots.length / 2 - 1;
+        int slot = mix(key) & mask;
+        while (slots[slot * 2] != 0) {
+            if (slots[slot * 2] == key) {
+                slots[slot * 2 + 1] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot * 2] = key;
+        slots[slot * 2 + 1] = value;
+        return true;
+    }
+
+    /**
+     * Spreads the key bits, packed isbn numbers are dense in their low digits
+     */
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
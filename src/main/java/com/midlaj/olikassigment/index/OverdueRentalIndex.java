@@ -0,0 +1,130 @@
+package com.midlaj.olikassigment.index;
+
+import com.midlaj.olikassigment.dto.RentalDateKey;
+import com.midlaj.olikassigment.model.Rental;
+import com.midlaj.olikassigment.repository.RentalRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * In memory index of the open rentals ordered by rental date, so an overdue page is read by seeking
+ * into a sorted set instead of scanning the open rentals. It is loaded once the application is ready
+ * and then kept up to date by the rental service on every checkout and return, applied only after the
+ * transaction commits.
+ * The index only sees the writes of this instance, enable it only when a single instance writes rentals.
+ */
+@Component
+public class OverdueRentalIndex {
+
+    private final RentalRepository rentalRepository;
+
+    private final boolean enabled;
+
+    private final ConcurrentSkipListSet<RentalDateKey> openRentals = new ConcurrentSkipListSet<>(RentalDateKey.ORDER);
+
+    /**
+     * Rentals returned while the index is loading, they may still be read as open by the load
+     */
+    private final Set<RentalDateKey> returnedWhileLoading = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loading;
+
+    private volatile boolean ready;
+
+    public OverdueRentalIndex(RentalRepository rentalRepository,
+                              @Value("${library.rental.overdue-index.enabled:false}") boolean enabled) {
+        this.rentalRepository = rentalRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Loads every open rental into the index, from the primary, a read only transaction would go to a replica
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        if (!enabled) return;
+
+        loading = true;
+        returnedWhileLoading.clear();
+        try (Stream<RentalDateKey> keys = rentalRepository.streamOpenRentalKeys()) {
+            keys.forEach(openRentals::add);
+        }
+        openRentals.removeAll(returnedWhileLoading);
+        loading = false;
+        ready = true;
+    }
+
+    /**
+     * @return true when the index can answer overdue queries
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds a new rental to the index once the current transaction commits
+     * @param rental
+     */
+    public void onRented(Rental rental) {
+        if (!enabled) return;
+
+        RentalDateKey key = new RentalDateKey(rental.getRentalDate(), rental.getId());
+        AfterCommit.run(() -> openRentals.add(key));
+    }
+
+    /**
+     * Removes a returned rental from the index once the current transaction commits
+     * @param rental
+     */
+    public void onReturned(Rental rental) {
+        if (!enabled) return;
+
+        RentalDateKey key = new RentalDateKey(rental.getRentalDate(), rental.getId());
+        AfterCommit.run(() -> {
+            openRentals.remove(key);
+            if (loading) returnedWhileLoading.add(key);
+        });
+    }
+
+    /**
+     * Drops a rental the database no longer has open, returned or deleted through another instance
+     * @param key
+     */
+    public void discard(RentalDateKey key) {
+        openRentals.remove(key);
+    }
+
+    /**
+     * Reads open rentals rented out before the given date, in rental date order
+     * @param date  rentals before this date are overdue
+     * @param after position of the previous page, null for the first page
+     * @param limit maximum number of rentals
+     * @return positions of the overdue rentals
+     */
+    public List<RentalDateKey> findOverdue(LocalDate date, RentalDateKey after, int limit) {
+        NavigableSet<RentalDateKey> overdue = openRentals.headSet(new RentalDateKey(date, Long.MIN_VALUE), false);
+        if (after != null) {
+            overdue = overdue.tailSet(after, false);
+        }
+
+        List<RentalDateKey> keys = new ArrayList<>(Math.min(limit, 1024));
+        for (RentalDateKey key : overdue) {
+            if (keys.size() == limit) break;
+            keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -1,23 +1,30 @@
 package com.midlaj.olikassigment.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.midlaj.olikassigment.index.AuthorIndexListener;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
+@EntityListeners(AuthorIndexListener.class)
 @Getter
 @Setter
 @ToString
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "author")
+@Table(name = "author", indexes = @Index(name = "idx_author_name", columnList = "author_name"))
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Author {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "author_seq")
+    @SequenceGenerator(name = "author_seq", sequenceName = "author_seq", allocationSize = IdSequence.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "author_name", nullable = false, length = 256)
@@ -27,9 +34,25 @@ public class Author {
     private String biography;
 
     /**
-     * Define the one-to-many relationship with cascade deletion
+     * Optimistic locking version, incremented on every update
      */
-    @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /**
+     * Time of the last change, the Last-Modified of the author
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    /**
+     * Define the one-to-many relationship with cascade deletion. It is lazy and left out of toString
+     * and json, so loading an author never loads its books, they are read page by page instead
+     */
+    @OneToMany(mappedBy = "author", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
+    @ToString.Exclude
     private List<Book> books;
 }
@@ -1,33 +1,50 @@
 package com.midlaj.olikassigment.model;
 
 import com.midlaj.olikassigment.annotation.MaxYear;
+import com.midlaj.olikassigment.index.BookIndexListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 
 @Entity
+@EntityListeners(BookIndexListener.class)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name ="book")
+@Table(name ="book", indexes = {
+        @Index(name = "idx_book_author_id_id", columnList = "author_id, id"),
+        @Index(name = "idx_book_title", columnList = "book_title"),
+        @Index(name = "idx_book_available", columnList = "is_available, id")
+}, uniqueConstraints = @UniqueConstraint(name = Book.ISBN_CONSTRAINT, columnNames = "book_isbn"))
 public class Book {
 
+    /**
+     * Names of the constraints, integrity violations are told apart by them
+     */
+    public static final String ISBN_CONSTRAINT = "uk_book_isbn";
+
+    public static final String AUTHOR_CONSTRAINT = "fk_book_author";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = IdSequence.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name= "book_title", length = 256, nullable = false)
     private String title;
 
     @ManyToOne
-    @JoinColumn(name = "author_id", nullable = false)
+    @JoinColumn(name = "author_id", nullable = false, foreignKey = @ForeignKey(name = Book.AUTHOR_CONSTRAINT))
     private Author author;
 
-    @Column(unique = true, nullable = false, name = "book_isbn")
+    @Column(nullable = false, name = "book_isbn")
     private String isbn;
 
     @MaxYear
@@ -36,4 +53,18 @@ public class Book {
 
     @Column(name =  "is_available", nullable = false)
     private Boolean available;
+
+    /**
+     * Optimistic locking version, incremented on every update
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /**
+     * Time of the last change, the Last-Modified of the book
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
 }
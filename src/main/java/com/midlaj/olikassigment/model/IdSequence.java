@@ -0,0 +1,15 @@
+package com.midlaj.olikassigment.model;
+
+/**
+ * Settings shared by the id sequences of every entity.
+ * Ids are reserved from the database sequence in blocks of ALLOCATION_SIZE and handed out in memory
+ * (pooled-lo optimizer), so a batch of inserts needs one nextval call per block instead of one per row.
+ * The database sequences must be created with INCREMENT BY equal to this value.
+ */
+public final class IdSequence {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    private IdSequence() {
+    }
+}
@@ -9,16 +9,21 @@ import org.springframework.format.annotation.DateTimeFormat;
 
 import java.time.LocalDate;
 
+/**
+ * Open rentals are also covered by the partial index idx_rental_open_rental_date
+ * (rental_date, id) where return_date is null, declared in the V3__add_query_indexes migration only
+ */
 @Entity
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "rental")
+@Table(name = "rental", indexes = @Index(name = "idx_rental_book_id", columnList = "book_id"))
 public class Rental {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rental_seq")
+    @SequenceGenerator(name = "rental_seq", sequenceName = "rental_seq", allocationSize = IdSequence.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "book_id", nullable = false)
@@ -34,4 +39,11 @@ public class Rental {
     @DateTimeFormat(pattern = "yyyy-MM-dd")
     @Column(name = "return_date")
     private LocalDate returnDate;
+
+    /**
+     * Optimistic locking version, incremented on every update
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
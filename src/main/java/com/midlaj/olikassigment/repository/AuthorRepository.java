@@ -1,12 +1,65 @@
 package com.midlaj.olikassigment.repository;
 
+import com.midlaj.olikassigment.dto.AuthorName;
+import com.midlaj.olikassigment.dto.EntityVersion;
 import com.midlaj.olikassigment.model.Author;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface AuthorRepository extends JpaRepository<Author, Long> {
 
     Optional<Author> findAuthorByName(String name);
 
+    /**
+     * Reads the version and update time of the author without loading it
+     */
+    @Query("select new com.midlaj.olikassigment.dto.EntityVersion(a.version, a.updatedAt) from Author a where a.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Loads the author and locks its row until the transaction ends, so no book can be added to it meanwhile
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Author a where a.id = :id")
+    Optional<Author> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Deletes the author with one statement, without loading it or its books
+     */
+    @Modifying
+    @Query("delete from Author a where a.id = :id")
+    int deleteInBulkById(@Param("id") Long id);
+
+    /**
+     * Seek query for keyset pagination, reads the next rows after the given id using the primary key index
+     */
+    List<Author> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("select a.name from Author a where a.id = :id")
+    Optional<String> findNameById(@Param("id") Long id);
+
+    @Query("select a.id from Author a where a.id in :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Streams the id and name of every author, without loading the entities
+     */
+    @Query("select new com.midlaj.olikassigment.dto.AuthorName(a.id, a.name) from Author a")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<AuthorName> streamNames();
+
 }
@@ -1,10 +1,26 @@
 package com.midlaj.olikassigment.repository;
 
+import com.midlaj.olikassigment.dto.BookAvailability;
+import com.midlaj.olikassigment.dto.BookCreationCheck;
+import com.midlaj.olikassigment.dto.BookIsbn;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.dto.BookTitle;
+import com.midlaj.olikassigment.dto.EntityVersion;
 import com.midlaj.olikassigment.model.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
 
@@ -12,10 +28,150 @@ public interface BookRepository extends JpaRepository<Book, Long> {
 
     Optional<Book> findBookByIsbn(String isbn);
 
-    List<Book> findBooksByAuthorId(Long id);
+    @Query("select b.id from Book b where b.isbn = :isbn")
+    Optional<Long> findIdByIsbn(@Param("isbn") String isbn);
 
-    List<Book> findBooksByAvailableTrue();
+    /**
+     * Reads the greatest isbn-13 with the given prefix. The isbns of Utils.isbn13 share the 979 prefix and
+     * sort by their sequence number
+     */
+    @Query("select max(b.isbn) from Book b where b.isbn like concat(:prefix, '%') and length(b.isbn) = 13")
+    Optional<String> findMaxIsbnStartingWith(@Param("prefix") String prefix);
 
-    List<Book> findBooksByAvailableFalse();
+    /**
+     * Reads the versions and update times of the book and of its author, shown with it, without loading them
+     */
+    @Query("select new com.midlaj.olikassigment.dto.EntityVersion(b.version, b.updatedAt, a.version, a.updatedAt) "
+            + "from Book b join b.author a where b.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Listing queries. They select the book columns and the author id and name with a single join into
+     * BookSummary, so listings neither load the author of every book one by one nor return whole authors
+     */
+    String SUMMARY = "select new com.midlaj.olikassigment.dto.BookSummary(b.id, b.title, b.isbn, b.publicationYear, "
+            + "b.available, a.id, a.name, b.version) from Book b join b.author a ";
+
+    /**
+     * Seek query for keyset pagination of the books of an author, read from the (author_id, id) index.
+     * It starts from the author and left joins the books, so it also tells whether the author exists:
+     * no row when it does not, a single row without book when it has no books after the given id
+     */
+    @Query("select new com.midlaj.olikassigment.dto.BookSummary(b.id, b.title, b.isbn, b.publicationYear, b.available, "
+            + "a.id, a.name, b.version) from Author a left join a.books b on b.id > :afterId where a.id = :authorId order by b.id")
+    List<BookSummary> findSummariesByAuthorAfter(@Param("authorId") Long authorId, @Param("afterId") Long afterId,
+                                                 Limit limit);
+
+    /**
+     * Seek query for keyset pagination of available and rented books, read from the (is_available, id) index
+     */
+    @Query(SUMMARY + "where b.available = :available and b.id > :afterId order by b.id")
+    List<BookSummary> findSummariesByAvailableAfter(@Param("available") boolean available, @Param("afterId") Long afterId,
+                                                    Limit limit);
+
+    long countByAvailableTrue();
+
+    long countByAvailableFalse();
+
+    /**
+     * Seek query for keyset pagination, reads the next rows after the given id using the primary key index
+     */
+    @Query(SUMMARY + "where b.id > :afterId order by b.id")
+    List<BookSummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(SUMMARY + "where b.id in :ids")
+    List<BookSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Loads the books with their authors in one query, the eager author would otherwise be read with a
+     * select of its own for every distinct author
+     */
+    @Query("select b from Book b join fetch b.author where b.id in :ids")
+    List<Book> findAllWithAuthorByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Streams every book with its author in one query. Rows are fetched from a server side cursor in
+     * chunks of the fetch size and loaded read only, so it has to be consumed inside a transaction.
+     */
+    @Query("select b from Book b join fetch b.author order by b.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Book> streamAllWithAuthor();
+
+    /**
+     * Streams the id and isbn of every book, without loading the entities
+     */
+    @Query("select new com.midlaj.olikassigment.dto.BookIsbn(b.id, b.isbn) from Book b")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<BookIsbn> streamIsbns();
+
+    /**
+     * Streams the id, title and author id of every book, without loading the entities
+     */
+    @Query("select new com.midlaj.olikassigment.dto.BookTitle(b.id, b.title, b.author.id) from Book b")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<BookTitle> streamTitles();
+
+    /**
+     * Streams the id and availability of every book, without loading the entities
+     */
+    @Query("select new com.midlaj.olikassigment.dto.BookAvailability(b.id, b.available) from Book b")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<BookAvailability> streamAvailability();
+
+    /**
+     * Fallback search while the search index is not loaded, scans the titles
+     */
+    @Query(SUMMARY + "where lower(b.title) like lower(concat('%', :#{escape(#title)}, '%')) escape :#{escapeCharacter()} "
+            + "order by b.id")
+    List<BookSummary> findSummariesByTitleContaining(@Param("title") String title, Limit limit);
+
+    /**
+     * Marks the book as rented only when it is still available, in a single conditional update.
+     * Returns the number of updated rows, 0 when the book does not exist or is already rented out
+     */
+    @Modifying
+    @Query("update Book b set b.available = false, b.version = b.version + 1, b.updatedAt = instant "
+            + "where b.id = :id and b.available = true")
+    int markRentedIfAvailable(@Param("id") Long id);
+
+    /**
+     * Marks the book as available again when it is rented out, in a single conditional update.
+     * Returns the number of updated rows, 0 when the book does not exist or is already available
+     */
+    @Modifying
+    @Query("update Book b set b.available = true, b.version = b.version + 1, b.updatedAt = instant "
+            + "where b.id = :id and b.available = false")
+    int markAvailableIfRented(@Param("id") Long id);
+
+    /**
+     * Answers every check needed before inserting a book in one round trip: whether the author exists and
+     * whether the title or the isbn is already taken. Each check is an index lookup, the isbn lookup is
+     * skipped when checkIsbn is false
+     */
+    @Query(value = "select exists(select 1 from author where id = :authorId) as \"authorExists\", "
+            + "exists(select 1 from book where book_title = :title) as \"titleTaken\", "
+            + "(:checkIsbn and exists(select 1 from book where book_isbn = :isbn)) as \"isbnTaken\"", nativeQuery = true)
+    BookCreationCheck checkNewBook(@Param("authorId") Long authorId, @Param("title") String title, @Param("isbn") String isbn,
+                                   @Param("checkIsbn") boolean checkIsbn);
+
+    @Query("select new com.midlaj.olikassigment.dto.BookIsbn(b.id, b.isbn) from Book b where b.author.id = :authorId")
+    List<BookIsbn> findIsbnsByAuthorId(@Param("authorId") Long authorId);
+
+    /**
+     * Deletes the books of an author with one statement, skipping books rented out. A book being checked
+     * out meanwhile is waited for and then skipped, so a count below the number of books means one is rented
+     */
+    @Modifying
+    @Query("delete from Book b where b.author.id = :authorId and b.available = true")
+    int deleteAvailableByAuthorId(@Param("authorId") Long authorId);
+
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findExistingIsbns(@Param("isbns") Collection<String> isbns);
+
+    @Query("select b.title from Book b where b.title in :titles")
+    Set<String> findExistingTitles(@Param("titles") Collection<String> titles);
 
 }
@@ -1,15 +1,65 @@
 package com.midlaj.olikassigment.repository;
 
+import com.midlaj.olikassigment.dto.RentalDateKey;
 import com.midlaj.olikassigment.model.Rental;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface RentalRepository extends JpaRepository<Rental, Long> {
 
     Boolean existsByBookIdAndRentalDateIsNull(Long bookId);
 
-    List<Rental> findByRentalDateBeforeAndReturnDateIsNull(LocalDate currentDate);
+    /**
+     * Checks whether a book of the author is rented out, read from the book_id index of the rentals
+     */
+    @Query("select count(r) > 0 from Rental r where r.returnDate is null "
+            + "and r.bookId in (select b.id from Book b where b.author.id = :authorId)")
+    boolean existsOpenRentalByAuthorId(@Param("authorId") Long authorId);
+
+    /**
+     * First page of the overdue rentals, ordered by rental date and id to match the partial index on open rentals
+     */
+    List<Rental> findByRentalDateBeforeAndReturnDateIsNullOrderByRentalDateAscIdAsc(LocalDate date, Limit limit);
+
+    /**
+     * Seek query for the following pages of the overdue rentals, reads the next rows after the given
+     * rental date and id from the partial index on open rentals
+     */
+    @Query("select r from Rental r where r.returnDate is null and r.rentalDate < :date "
+            + "and (r.rentalDate, r.id) > (:afterDate, :afterId) order by r.rentalDate, r.id")
+    List<Rental> findOverdueAfter(@Param("date") LocalDate date, @Param("afterDate") LocalDate afterDate,
+                                  @Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Streams every overdue rental in rental date order. Rows are fetched from a server side cursor in
+     * chunks of the fetch size and loaded read only, so it has to be consumed inside a transaction.
+     */
+    @Query("select r from Rental r where r.returnDate is null and r.rentalDate < :date order by r.rentalDate, r.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Rental> streamOverdue(@Param("date") LocalDate date);
+
+    /**
+     * Streams the rental date and id of every open rental, without loading the entities
+     */
+    @Query("select new com.midlaj.olikassigment.dto.RentalDateKey(r.rentalDate, r.id) from Rental r where r.returnDate is null")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<RentalDateKey> streamOpenRentalKeys();
+
+    /**
+     * Seek query for keyset pagination, reads the next rows after the given id using the primary key index
+     */
+    List<Rental> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 
 }
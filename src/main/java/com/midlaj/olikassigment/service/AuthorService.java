@@ -1,6 +1,9 @@
 package com.midlaj.olikassigment.service;
 
+import com.midlaj.olikassigment.dto.AuthorDeletionReport;
 import com.midlaj.olikassigment.dto.AuthorRequest;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
 import com.midlaj.olikassigment.model.Author;
 
 import java.util.List;
@@ -12,9 +15,15 @@ public interface AuthorService {
 
     Author getAuthorById(Long id);
 
-    List<Author> getAuthors();
+    EntityVersion getAuthorVersion(Long id);
 
-    void deleteAuthorById(Long id);
+    Author getAuthorReference(Long id);
+
+    CursorPage<Author> getAuthors(String after, Integer limit);
+
+    AuthorDeletionReport deleteAuthorById(Long id);
 
     Boolean checkAuthorById(Long id);
+
+    List<Author> saveAuthors(List<Author> authors);
 }
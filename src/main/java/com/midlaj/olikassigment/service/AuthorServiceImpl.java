@@ -1,21 +1,53 @@
 package com.midlaj.olikassigment.service;
 
+import com.midlaj.olikassigment.config.CacheConfig;
+import com.midlaj.olikassigment.config.MetricsConfig;
+import com.midlaj.olikassigment.dto.AuthorDeletionReport;
 import com.midlaj.olikassigment.dto.AuthorRequest;
+import com.midlaj.olikassigment.dto.BookIsbn;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
 import com.midlaj.olikassigment.exception.DuplicateEntityException;
+import com.midlaj.olikassigment.exception.EntityInUseException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.index.AuthorIndexListener;
+import com.midlaj.olikassigment.index.BookIndexListener;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.repository.RentalRepository;
+import com.midlaj.olikassigment.util.CursorUtils;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class AuthorServiceImpl implements AuthorService {
 
     public final AuthorRepository authorRepository;
 
-    public AuthorServiceImpl(AuthorRepository authorRepository) {
+    private final BookRepository bookRepository;
+
+    private final RentalRepository rentalRepository;
+
+    private final BookIndexListener bookIndexListener;
+
+    private final AuthorIndexListener authorIndexListener;
+
+    public AuthorServiceImpl(AuthorRepository authorRepository, BookRepository bookRepository, RentalRepository rentalRepository,
+                             BookIndexListener bookIndexListener, AuthorIndexListener authorIndexListener) {
         this.authorRepository = authorRepository;
+        this.bookRepository = bookRepository;
+        this.rentalRepository = rentalRepository;
+        this.bookIndexListener = bookIndexListener;
+        this.authorIndexListener = authorIndexListener;
     }
 
     @Override
@@ -45,40 +77,95 @@ public class AuthorServiceImpl implements AuthorService {
     }
 
     /**
-     * For finding author with id
+     * For finding author with id. Authors are cached by id, the cached instance is shared and must not be changed
      * @param id
      * @return author object
      */
     @Override
+    @Cacheable(cacheNames = CacheConfig.AUTHORS, key = "#id")
     public Author getAuthorById(Long id) {
         return authorRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Author not found"));
     }
 
     /**
-     * for retrieving all authors
-     * @return list of author
+     * For finding the validators of an author for conditional requests, read from the database without
+     * loading the author
+     * @param id
+     * @return version and last change of the author
      */
     @Override
-    public List<Author> getAuthors() {
+    public EntityVersion getAuthorVersion(Long id) {
+        return authorRepository.findVersionById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Author not found"));
+    }
 
-        return authorRepository.findAll();
+    /**
+     * For getting a lazy reference to an author without loading it, used when the author is only
+     * needed as a foreign key and is already known to exist
+     * @param id
+     * @return author proxy
+     */
+    @Override
+    public Author getAuthorReference(Long id) {
+        return authorRepository.getReferenceById(id);
+    }
 
+    /**
+     * for retrieving authors page by page, seeking past the id given in the cursor
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of author
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<Author> getAuthors(String after, Integer limit) {
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        List<Author> authors = authorRepository.findByIdGreaterThanOrderByIdAsc(CursorUtils.decode(after), Limit.of(pageSize + 1));
+        return CursorUtils.toPage(authors, pageSize, Author::getId);
     }
 
     /**
-     * for deleting author by id
+     * for deleting author by id. The books of the author are deleted with it by set based statements in
+     * one transaction, instead of loading and removing every book, and every cached book is dropped.
+     * An author with a book rented out is not deleted
      * @param id
+     * @return number of deleted books
      */
     @Override
-    public void deleteAuthorById(Long id) {
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.AUTHORS, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.BOOKS, allEntries = true)
+    })
+    public AuthorDeletionReport deleteAuthorById(Long id) {
 
         /**
-         * Checking if author with id is a valid author
+         * Checking if author with id is a valid author, locking it so no book is added until the deletion ends
          */
-        authorRepository.findById(id)
+        authorRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new EntityNotFoundException("Author not found"));
-        authorRepository.deleteById(id);
+
+        /**
+         * the deleted books are read first, the bulk delete bypasses the entity listeners keeping the indexes
+         */
+        List<BookIsbn> books = bookRepository.findIsbnsByAuthorId(id);
+        if (rentalRepository.existsOpenRentalByAuthorId(id)) {
+            throw new EntityInUseException("Author has books rented out");
+        }
+
+        /**
+         * a book checked out after the check is skipped by the delete, rolling back everything
+         */
+        int booksDeleted = bookRepository.deleteAvailableByAuthorId(id);
+        if (booksDeleted != books.size()) {
+            throw new EntityInUseException("Author has books rented out");
+        }
+        authorRepository.deleteInBulkById(id);
+
+        bookIndexListener.onBulkDelete(books);
+        authorIndexListener.onBulkDelete(id);
+        return new AuthorDeletionReport(id, booksDeleted);
     }
 
     /**
@@ -91,4 +178,16 @@ public class AuthorServiceImpl implements AuthorService {
         return authorRepository.existsById(id);
     }
 
+    /**
+     * saving author entities in bulk, inserted as JDBC batches in one transaction.
+     * Callers loading large volumes should pass chunks of a few thousand authors
+     * @param authors
+     * @return saved authors
+     */
+    @Override
+    @Transactional
+    public List<Author> saveAuthors(List<Author> authors) {
+        return authorRepository.saveAll(authors);
+    }
+
 }
@@ -0,0 +1,12 @@
+package com.midlaj.olikassigment.service;
+
+import com.midlaj.olikassigment.dto.BookImportReport;
+
+import java.io.InputStream;
+
+public interface BookImportService {
+
+    BookImportReport importCsv(InputStream inputStream);
+
+    BookImportReport importNdjson(InputStream inputStream);
+}
@@ -0,0 +1,377 @@
+package com.midlaj.olikassigment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midlaj.olikassigment.config.MetricsConfig;
+import com.midlaj.olikassigment.dto.BookImportError;
+import com.midlaj.olikassigment.dto.BookImportReport;
+import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.util.Utils;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports publisher catalogues. The upload is read line by line and processed in chunks: every chunk is
+ * validated, checked against the database with set based queries and inserted as JDBC batches in its own
+ * transaction, so memory use depends on the chunk size and not on the size of the upload.
+ */
+@Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
+@Slf4j
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String CSV_HEADER = "title";
+
+    private final BookRepository bookRepository;
+
+    private final AuthorRepository authorRepository;
+
+    private final Validator validator;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final EntityManager entityManager;
+
+    private final int chunkSize;
+
+    public BookImportServiceImpl(BookRepository bookRepository, AuthorRepository authorRepository, Validator validator,
+                                 ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                 EntityManager entityManager, @Value("${library.import.chunk-size}") int chunkSize) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManager = entityManager;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * For importing a csv upload with the columns title,authorId,isbn,publicationYear.
+     * A first line starting with "title" is treated as header
+     * @param inputStream
+     * @return import report
+     */
+    @Override
+    public BookImportReport importCsv(InputStream inputStream) {
+        return importRows(inputStream, this::parseCsvRow);
+    }
+
+    /**
+     * For importing a newline delimited json upload, one book request object per line
+     * @param inputStream
+     * @return import report
+     */
+    @Override
+    public BookImportReport importNdjson(InputStream inputStream) {
+        return importRows(inputStream, this::parseJsonRow);
+    }
+
+    private BookImportReport importRows(InputStream inputStream, RowParser parser) {
+        long startedAt = System.currentTimeMillis();
+        ImportProgress progress = new ImportProgress();
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                ImportRow row = parser.parse(line, lineNumber);
+                if (row == null) {
+                    continue;
+                }
+
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, progress);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, progress);
+        }
+
+        log.info("Imported {} of {} rows in {} ms", progress.imported, progress.total, System.currentTimeMillis() - startedAt);
+        return progress.toReport();
+    }
+
+    /**
+     * Validates a chunk, rejects duplicates with one query per key and inserts the remaining rows as a batch
+     * @param chunk
+     * @param progress
+     */
+    private void importChunk(List<ImportRow> chunk, ImportProgress progress) {
+
+        /**
+         * Validate rows and reject duplicates inside the chunk
+         */
+        List<BookRequest> candidates = new ArrayList<>();
+        List<Long> candidateLines = new ArrayList<>();
+        Set<String> isbns = new HashSet<>();
+        Set<String> titles = new HashSet<>();
+        Set<Long> authorIds = new HashSet<>();
+
+        for (ImportRow row : chunk) {
+            progress.total++;
+            if (row.error() != null) {
+                progress.fail(row.line(), row.error());
+                continue;
+            }
+
+            BookRequest request = row.request();
+            String violation = validate(request);
+            if (violation != null) {
+                progress.fail(row.line(), violation);
+            } else if (isbns.contains(request.isbn())) {
+                progress.fail(row.line(), "Book with isbn '" + request.isbn() + "' appears more than once in the upload.");
+            } else if (titles.contains(request.title())) {
+                progress.fail(row.line(), "Book with title '" + request.title() + "' appears more than once in the upload.");
+            } else {
+                isbns.add(request.isbn());
+                titles.add(request.title());
+                authorIds.add(request.authorId());
+                candidates.add(request);
+                candidateLines.add(row.line());
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        /**
+         * Check isbn, title and author of the whole chunk with one query each
+         */
+        Set<String> existingIsbns = bookRepository.findExistingIsbns(isbns);
+        Set<String> existingTitles = bookRepository.findExistingTitles(titles);
+        Set<Long> existingAuthorIds = authorRepository.findExistingIds(authorIds);
+
+        List<BookRequest> accepted = new ArrayList<>();
+        List<Long> acceptedLines = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            BookRequest request = candidates.get(i);
+            long line = candidateLines.get(i);
+            if (existingIsbns.contains(request.isbn())) {
+                progress.fail(line, "Book with isbn '" + request.isbn() + "' already exists.");
+            } else if (existingTitles.contains(request.title())) {
+                progress.fail(line, "Book with title '" + request.title() + "' already exists.");
+            } else if (!existingAuthorIds.contains(request.authorId())) {
+                progress.fail(line, "Author not found");
+            } else {
+                accepted.add(request);
+                acceptedLines.add(line);
+            }
+        }
+
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        /**
+         * Insert the chunk as JDBC batches. If a concurrent writer inserted one of the books or deleted one of
+         * the authors meanwhile, the chunk is rolled back and its rows are inserted one by one, so only the
+         * conflicting rows fail
+         */
+        try {
+            insert(accepted);
+            progress.imported += accepted.size();
+        } catch (DataIntegrityViolationException ex) {
+            for (int i = 0; i < accepted.size(); i++) {
+                try {
+                    insert(List.of(accepted.get(i)));
+                    progress.imported++;
+                } catch (DataIntegrityViolationException rowEx) {
+                    progress.fail(acceptedLines.get(i), insertError(accepted.get(i), rowEx));
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts books in one transaction, referencing authors by id without loading them.
+     * The inserts are flushed and the persistence context cleared before the commit, so it does not grow
+     * with the upload
+     * @param requests
+     */
+    private void insert(List<BookRequest> requests) {
+        transactionTemplate.executeWithoutResult(status -> {
+            bookRepository.saveAllAndFlush(requests.stream()
+                    .map(request -> Book.builder()
+                            .title(request.title())
+                            .isbn(request.isbn())
+                            .publicationYear(request.publicationYear())
+                            .author(authorRepository.getReferenceById(request.authorId()))
+                            .available(Boolean.TRUE)
+                            .build())
+                    .toList());
+            entityManager.clear();
+        });
+    }
+
+    /**
+     * Tells the reason of a failed insert from the violated constraint
+     */
+    private static String insertError(BookRequest request, DataIntegrityViolationException ex) {
+        String constraint = Utils.violatedConstraint(ex);
+        if (Book.ISBN_CONSTRAINT.equals(constraint)) {
+            return "Book with isbn '" + request.isbn() + "' already exists.";
+        }
+        if (Book.AUTHOR_CONSTRAINT.equals(constraint)) {
+            return "Author not found";
+        }
+        log.warn("Import of book with isbn '{}' failed", request.isbn(), ex);
+        return "Book could not be saved";
+    }
+
+    private String validate(BookRequest request) {
+        if (request.authorId() == null) {
+            return "Author not found";
+        }
+        Set<ConstraintViolation<BookRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Parses a csv line of title,authorId,isbn,publicationYear. Fields may be quoted with double quotes
+     * @param line
+     * @param lineNumber
+     * @return parsed row, null for the header line
+     */
+    private ImportRow parseCsvRow(String line, long lineNumber) {
+        if (lineNumber == 1 && line.regionMatches(true, 0, CSV_HEADER, 0, CSV_HEADER.length())) {
+            return null;
+        }
+
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() != 4) {
+            return ImportRow.failed(lineNumber, "Expected 4 columns: title,authorId,isbn,publicationYear");
+        }
+
+        try {
+            return ImportRow.parsed(lineNumber, new BookRequest(
+                    fields.get(0).trim(),
+                    Long.valueOf(fields.get(1).trim()),
+                    fields.get(2).trim(),
+                    Integer.valueOf(fields.get(3).trim())));
+        } catch (NumberFormatException ex) {
+            return ImportRow.failed(lineNumber, "Author id and publication year must be numbers");
+        }
+    }
+
+    private ImportRow parseJsonRow(String line, long lineNumber) {
+        try {
+            return ImportRow.parsed(lineNumber, objectMapper.readValue(line, BookRequest.class));
+        } catch (JsonProcessingException ex) {
+            return ImportRow.failed(lineNumber, "Malformed json");
+        }
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        ImportRow parse(String line, long lineNumber);
+    }
+
+    private record ImportRow(long line, BookRequest request, String error) {
+
+        static ImportRow parsed(long line, BookRequest request) {
+            return new ImportRow(line, request, null);
+        }
+
+        static ImportRow failed(long line, String error) {
+            return new ImportRow(line, null, error);
+        }
+    }
+
+    private static class ImportProgress {
+
+        private long total;
+
+        private long imported;
+
+        private long failed;
+
+        private final List<BookImportError> errors = new ArrayList<>();
+
+        void fail(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BookImportError(line, message));
+            }
+        }
+
+        BookImportReport toReport() {
+            return new BookImportReport(total, imported, failed, errors);
+        }
+    }
+}
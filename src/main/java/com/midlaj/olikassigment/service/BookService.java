@@ -1,9 +1,17 @@
 package com.midlaj.olikassigment.service;
 
+import com.midlaj.olikassigment.dto.AvailabilityCounts;
+import com.midlaj.olikassigment.dto.BookAvailability;
 import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
+import com.midlaj.olikassigment.dto.Suggestion;
 import com.midlaj.olikassigment.model.Book;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface BookService {
 
@@ -11,16 +19,38 @@ public interface BookService {
 
     Book getBookById(Long id);
 
-    List<Book> getBooks();
+    EntityVersion getBookVersion(Long id);
+
+    Long getBookIdByIsbn(String isbn);
+
+    CursorPage<BookSummary> getBooks(String after, Integer limit);
 
     void deleteBookById(Long id);
 
     Book saveBook(Book book);
 
+    List<Book> saveBooks(List<Book> books);
+
+
+    CursorPage<BookSummary> findBooksByAuthor(Long authorId, String after, Integer limit);
+
+    CursorPage<BookSummary> findAvailableBooksForRent(String after, Integer limit);
+
+    CursorPage<BookSummary> findRentedBooks(String after, Integer limit);
+
+    BookAvailability getBookAvailability(Long id);
+
+    AvailabilityCounts getAvailabilityCounts();
+
+    void exportBooks(Consumer<Book> consumer);
+
+    void checkoutBook(Long id);
+
+    void checkinBook(Long id);
 
-    List<Book> findBooksByAuthor(Long authorId);
+    List<Book> getBooksByIds(Collection<Long> ids);
 
-    List<Book> findAvailableBooksForRent();
+    List<BookSummary> searchBooks(String query, Integer limit);
 
-    List<Book> findRentedBooks();
+    List<Suggestion> autocomplete(String prefix, Integer limit);
 }
@@ -1,56 +1,121 @@
 package com.midlaj.olikassigment.service;
 
+import com.midlaj.olikassigment.config.CacheConfig;
+import com.midlaj.olikassigment.config.MetricsConfig;
+import com.midlaj.olikassigment.dto.AvailabilityCounts;
+import com.midlaj.olikassigment.dto.BookAvailability;
+import com.midlaj.olikassigment.dto.BookCreationCheck;
 import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
+import com.midlaj.olikassigment.dto.Suggestion;
+import com.midlaj.olikassigment.exception.AlreadyRentedException;
 import com.midlaj.olikassigment.exception.DuplicateEntityException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.index.AutocompleteIndex;
+import com.midlaj.olikassigment.index.AvailabilityIndex;
+import com.midlaj.olikassigment.index.BookSearchIndex;
+import com.midlaj.olikassigment.index.IsbnIndex;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.model.Book;
 import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.util.CursorUtils;
+import com.midlaj.olikassigment.util.Utils;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class BookServiceImpl implements BookService {
 
     public final BookRepository bookRepository;
 
     public final AuthorService authorService;
 
+    private final IsbnIndex isbnIndex;
 
-    public BookServiceImpl(BookRepository bookRepository, AuthorService authorService) {
+    private final BookSearchIndex bookSearchIndex;
+
+    private final AutocompleteIndex autocompleteIndex;
+
+    private final AvailabilityIndex availabilityIndex;
+
+    private static final int SEARCH_DEFAULT_LIMIT = 20;
+
+    private static final int SEARCH_MAX_LIMIT = 100;
+
+    private static final int AUTOCOMPLETE_DEFAULT_LIMIT = 10;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    public BookServiceImpl(BookRepository bookRepository, AuthorService authorService, IsbnIndex isbnIndex,
+                           BookSearchIndex bookSearchIndex, AutocompleteIndex autocompleteIndex,
+                           AvailabilityIndex availabilityIndex) {
         this.bookRepository = bookRepository;
         this.authorService = authorService;
+        this.isbnIndex = isbnIndex;
+        this.bookSearchIndex = bookSearchIndex;
+        this.autocompleteIndex = autocompleteIndex;
+        this.availabilityIndex = availabilityIndex;
     }
 
 
     @Override
+    @Transactional
     public Book createNewBook(BookRequest bookRequest) {
 
+        /**
+         * Checks for duplicate isbn in the isbn index first, a known isbn fails without a query and
+         * an isbn known to be new skips the isbn lookup of the query
+         */
+        long isbnBookId = isbnIndex.lookup(bookRequest.isbn());
+        if (isbnBookId > 0) {
+            throw new DuplicateEntityException("Book with isbn '" + bookRequest.isbn() + "' already exists.");
+        }
+
+        /**
+         * Checks for duplicate title, duplicate isbn and a valid author with one query
+         */
+        BookCreationCheck check = bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(),
+                isbnBookId == IsbnIndex.UNKNOWN);
+
         /**
          * Checks for duplicate book title, if duplicate found ith will throw a custom exception
          */
-        bookRepository.findBookByTitle(bookRequest.title())
-                .ifPresentOrElse((s) -> {
-                    System.out.println(s);
-                    throw new DuplicateEntityException("Book with title '" + bookRequest.title() + "' already exists.");
-                }, () -> {
-                    System.out.println("here");
-                });
+        if (check.getTitleTaken()) {
+            throw new DuplicateEntityException("Book with title '" + bookRequest.title() + "' already exists.");
+        }
 
         /**
          * Checks for duplicate book isbn, if duplicate found ith will throw a custom exception
          */
-        bookRepository.findBookByIsbn(bookRequest.isbn())
-                .ifPresentOrElse((s) -> {
-                    throw new DuplicateEntityException("Book with isbn '" + bookRequest.isbn() + "' already exists.");
-                }, () -> {
-                });
+        if (check.getIsbnTaken()) {
+            throw new DuplicateEntityException("Book with isbn '" + bookRequest.isbn() + "' already exists.");
+        }
 
         /**
          * Checks for if author id is a valid author in db. If not present it will throw a not found exception
          */
-        if (!authorService.checkAuthorById(bookRequest.authorId())){
+        if (!check.getAuthorExists()) {
             throw new EntityNotFoundException("Author not found");
         }
 
@@ -65,7 +130,8 @@ public class BookServiceImpl implements BookService {
                 .build();
 
         /**
-         * getting author object and set to book object
+         * getting the author, already known to exist, from the author cache or loaded inside this transaction,
+         * so the returned book is complete and serialized without a session
          */
         Author author = authorService.getAuthorById(bookRequest.authorId());
         newBook.setAuthor(author);
@@ -75,28 +141,80 @@ public class BookServiceImpl implements BookService {
          */
         newBook.setAvailable(Boolean.TRUE);
 
-        Book createdBook = bookRepository.save(newBook);
-        return createdBook;
+        /**
+         * The unique isbn index still guards against a concurrent insert of the same isbn, and the foreign key
+         * against a concurrent delete of the author
+         */
+        try {
+            return bookRepository.saveAndFlush(newBook);
+        } catch (DataIntegrityViolationException ex) {
+            String constraint = Utils.violatedConstraint(ex);
+            if (Book.ISBN_CONSTRAINT.equals(constraint)) {
+                throw new DuplicateEntityException("Book with isbn '" + bookRequest.isbn() + "' already exists.");
+            }
+            if (Book.AUTHOR_CONSTRAINT.equals(constraint)) {
+                throw new EntityNotFoundException("Author not found");
+            }
+            throw ex;
+        }
     }
 
     /**
-     * For finding book with id
+     * For finding book with id. Books are cached by id, the cached instance is shared and must not be changed
      * @param id
      * @return book object
      */
     @Override
+    @Cacheable(cacheNames = CacheConfig.BOOKS, key = "#id")
     public Book getBookById(Long id) {
         return bookRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Book not found"));
     }
 
     /**
-     * for retrieving all books
-     * @return list of book
+     * For finding the validators of a book for conditional requests, read from the database without loading
+     * the book, so an unchanged book is not loaded at all
+     * @param id
+     * @return versions and last change of the book and its author
+     */
+    @Override
+    public EntityVersion getBookVersion(Long id) {
+        return bookRepository.findVersionById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Book not found"));
+    }
+
+    /**
+     * For resolving an isbn to the id of its book. The isbn index answers without a query,
+     * the database is asked only for isbns the index can not answer. The index answers only when
+     * this is the single instance writing books
+     * @param isbn
+     * @return book id
      */
     @Override
-    public List<Book> getBooks() {
-        return bookRepository.findAll();
+    public Long getBookIdByIsbn(String isbn) {
+        long id = isbnIndex.lookup(isbn);
+        if (id == IsbnIndex.MISSING) {
+            throw new EntityNotFoundException("Book not found");
+        }
+        if (id == IsbnIndex.UNKNOWN) {
+            return bookRepository.findIdByIsbn(isbn)
+                    .orElseThrow(() -> new EntityNotFoundException("Book not found"));
+        }
+        return id;
+    }
+
+    /**
+     * for retrieving books page by page, seeking past the id given in the cursor
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of book summary
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<BookSummary> getBooks(String after, Integer limit) {
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        List<BookSummary> books = bookRepository.findSummariesAfter(CursorUtils.decode(after), Limit.of(pageSize + 1));
+        return CursorUtils.toPage(books, pageSize, BookSummary::id);
     }
 
     /**
@@ -104,6 +222,7 @@ public class BookServiceImpl implements BookService {
      * @param id
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
     public void deleteBookById(Long id) {
 
         /**
@@ -120,41 +239,235 @@ public class BookServiceImpl implements BookService {
      * @return book
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#book.id", condition = "#book.id != null")
     public Book saveBook(Book book) {
         return bookRepository.save(book);
     }
 
     /**
-     * to find books by author
+     * saving book entities in bulk, inserted as JDBC batches in one transaction.
+     * Callers loading large volumes should pass chunks of a few thousand books
+     * @param books
+     * @return saved books
+     */
+    @Override
+    @Transactional
+    public List<Book> saveBooks(List<Book> books) {
+        return bookRepository.saveAll(books);
+    }
+
+    /**
+     * to find books by author page by page, checking the author exists in the same query
      * @param authorId
-     * @return list of book
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of book summary
      */
     @Override
-    public List<Book> findBooksByAuthor(Long authorId) {
+    @Transactional(readOnly = true)
+    public CursorPage<BookSummary> findBooksByAuthor(Long authorId, String after, Integer limit) {
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        List<BookSummary> rows = bookRepository.findSummariesByAuthorAfter(authorId, CursorUtils.decode(after),
+                Limit.of(pageSize + 1));
 
-        if (!authorService.checkAuthorById(authorId))
+        if (rows.isEmpty())
             throw new EntityNotFoundException("Author not found");
 
+        /**
+         * a row without book only says the author exists
+         */
+        List<BookSummary> books = rows.stream().filter(row -> row.id() != null).toList();
+        return CursorUtils.toPage(books, pageSize, BookSummary::id);
+    }
 
-        return bookRepository.findBooksByAuthorId(authorId);
+    /**
+     * to find books that are available for renting out, page by page in id order. The ids of a page are
+     * read from the availability index when it is loaded and only those books are loaded
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of book summary
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<BookSummary> findAvailableBooksForRent(String after, Integer limit) {
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        Long afterId = CursorUtils.decode(after);
+
+        if (availabilityIndex.isReady()) {
+            return loadAvailabilityPage(availabilityIndex.findAvailableIds(afterId, pageSize + 1), pageSize, true);
+        }
+        List<BookSummary> books = bookRepository.findSummariesByAvailableAfter(true, afterId, Limit.of(pageSize + 1));
+        return CursorUtils.toPage(books, pageSize, BookSummary::id);
     }
 
     /**
-     * to find books that are available for renting out
-     * @return list of book
+     * to find already rented books, page by page in id order. See findAvailableBooksForRent
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of book summary
      */
     @Override
-    public List<Book> findAvailableBooksForRent() {
-        return bookRepository.findBooksByAvailableTrue();
+    @Transactional(readOnly = true)
+    public CursorPage<BookSummary> findRentedBooks(String after, Integer limit) {
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        Long afterId = CursorUtils.decode(after);
+
+        if (availabilityIndex.isReady()) {
+            return loadAvailabilityPage(availabilityIndex.findRentedIds(afterId, pageSize + 1), pageSize, false);
+        }
+        List<BookSummary> books = bookRepository.findSummariesByAvailableAfter(false, afterId, Limit.of(pageSize + 1));
+        return CursorUtils.toPage(books, pageSize, BookSummary::id);
+    }
+
+    /**
+     * Loads the books of a page of ids read from the availability index, in id order. Books whose
+     * availability was changed through another instance are left out of the page
+     */
+    private CursorPage<BookSummary> loadAvailabilityPage(List<Long> ids, int pageSize, boolean available) {
+        List<Long> pageIds = ids.size() > pageSize ? ids.subList(0, pageSize) : ids;
+        if (pageIds.isEmpty()) return new CursorPage<>(List.of(), null);
+
+        List<BookSummary> items = loadSummariesInOrder(pageIds).stream()
+                .filter(book -> book.available() == available)
+                .toList();
+        String nextCursor = ids.size() > pageSize ? CursorUtils.encode(pageIds.get(pageSize - 1)) : null;
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    /**
+     * to check whether a book can be rented out, answered by the availability index without a query
+     * once it is loaded
+     * @param id
+     * @return availability of the book
+     */
+    @Override
+    public BookAvailability getBookAvailability(Long id) {
+        if (availabilityIndex.isReady()) {
+            if (!availabilityIndex.exists(id)) {
+                throw new EntityNotFoundException("Book not found");
+            }
+            return new BookAvailability(id, availabilityIndex.isAvailable(id));
+        }
+        Book book = bookRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Book not found"));
+        return new BookAvailability(id, book.getAvailable());
+    }
+
+    /**
+     * to count books by availability, answered by the availability index without a query once it is loaded
+     * @return number of available and rented books
+     */
+    @Override
+    public AvailabilityCounts getAvailabilityCounts() {
+        if (availabilityIndex.isReady()) {
+            return new AvailabilityCounts(availabilityIndex.countAvailable(), availabilityIndex.countRented());
+        }
+        return new AvailabilityCounts(bookRepository.countByAvailableTrue(), bookRepository.countByAvailableFalse());
+    }
+
+    /**
+     * to hand every book to the consumer one by one without holding the catalogue in memory.
+     * Each book and its author is detached once consumed so the persistence context stays small
+     * @param consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBooks(Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepository.streamAllWithAuthor()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+                entityManager.detach(book.getAuthor());
+            });
+        }
+    }
+
+    /**
+     * to mark a book as rented out. The availability is checked and flipped by one conditional update,
+     * so two concurrent renters can never check out the same book
+     * @param id
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
+    public void checkoutBook(Long id) {
+        if (bookRepository.markRentedIfAvailable(id) == 0) {
+
+            /**
+             * Nothing updated, either the book does not exist or it is already rented out
+             */
+            if (!bookRepository.existsById(id)) {
+                throw new EntityNotFoundException("Book not found");
+            }
+            throw new AlreadyRentedException("Book is not available.");
+        }
+    }
+
+    /**
+     * to mark a returned book as available again with one conditional update. Returning a book that is
+     * already available changes nothing
+     * @param id
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.BOOKS, key = "#id")
+    public void checkinBook(Long id) {
+        if (bookRepository.markAvailableIfRented(id) == 0 && !bookRepository.existsById(id)) {
+            throw new EntityNotFoundException("Book not found");
+        }
+    }
+
+    /**
+     * to find books by a list of ids with one query, their authors are fetched by the same query
+     * @param ids
+     * @return list of found books, missing ids are skipped
+     */
+    @Override
+    public List<Book> getBooksByIds(Collection<Long> ids) {
+        return bookRepository.findAllWithAuthorByIdIn(ids);
+    }
+
+    /**
+     * to search books by the words of their title and author name. The search index ranks the matches
+     * and only the returned books are loaded, with one query. While the index is not loaded the titles
+     * are scanned instead
+     * @param query
+     * @param limit maximum number of books
+     * @return best matching books first
+     */
+    @Override
+    public List<BookSummary> searchBooks(String query, Integer limit) {
+        int size = limit == null ? SEARCH_DEFAULT_LIMIT : Math.max(1, Math.min(limit, SEARCH_MAX_LIMIT));
+
+        if (!bookSearchIndex.isReady()) {
+            return bookRepository.findSummariesByTitleContaining(query.trim(), Limit.of(size));
+        }
+
+        List<Long> ids = bookSearchIndex.search(query, size).stream().map(BookSearchIndex.Hit::bookId).toList();
+        if (ids.isEmpty()) return List.of();
+
+        return loadSummariesInOrder(ids);
+    }
+
+    /**
+     * Loads the summaries of the given books with one query, in the order of the ids. Missing books are skipped
+     */
+    private List<BookSummary> loadSummariesInOrder(List<Long> ids) {
+        Map<Long, BookSummary> books = bookRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(BookSummary::id, Function.identity()));
+        return ids.stream().map(books::get).filter(Objects::nonNull).toList();
     }
 
     /**
-     * to find already rented books
-     * @return list of book
+     * to suggest book titles and author names starting with what was typed so far, answered from the
+     * autocomplete trie without a query. Nothing is suggested before the first build of the trie
+     * @param prefix
+     * @param limit maximum number of suggestions
+     * @return suggestions, best first
      */
     @Override
-    public List<Book> findRentedBooks() {
-        return bookRepository.findBooksByAvailableFalse();
+    public List<Suggestion> autocomplete(String prefix, Integer limit) {
+        return autocompleteIndex.suggest(prefix, limit == null ? AUTOCOMPLETE_DEFAULT_LIMIT : Math.max(1, limit));
     }
 
 
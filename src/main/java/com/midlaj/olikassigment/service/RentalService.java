@@ -1,18 +1,27 @@
 package com.midlaj.olikassigment.service;
 
+import com.midlaj.olikassigment.dto.BatchItemResult;
+import com.midlaj.olikassigment.dto.CursorPage;
 import com.midlaj.olikassigment.dto.RentalRequest;
 import com.midlaj.olikassigment.model.Rental;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface RentalService {
     Rental createNewRental(RentalRequest rentRequest);
 
     Rental returnBook(Long rentalId);
 
-    List<Rental> findOverdueRentals(Integer days);
+    List<BatchItemResult> createNewRentals(List<RentalRequest> rentalRequests);
 
-    List<Rental> getAllRentals();
+    List<BatchItemResult> returnBooks(List<Long> rentalIds);
+
+    CursorPage<Rental> findOverdueRentals(Integer days, String after, Integer limit);
+
+    void exportOverdueRentals(Integer days, Consumer<Rental> consumer);
+
+    CursorPage<Rental> getAllRentals(String after, Integer limit);
 
     Rental getRentalById(Long id);
 }
@@ -1,17 +1,40 @@
 package com.midlaj.olikassigment.service;
 
+import com.midlaj.olikassigment.annotation.RentalRetry;
+import com.midlaj.olikassigment.config.CacheConfig;
+import com.midlaj.olikassigment.config.MetricsConfig;
+import com.midlaj.olikassigment.dto.BatchItemResult;
+import com.midlaj.olikassigment.dto.BatchItemStatus;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.RentalDateKey;
 import com.midlaj.olikassigment.dto.RentalRequest;
 import com.midlaj.olikassigment.exception.AlreadyRentedException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.index.AvailabilityIndex;
+import com.midlaj.olikassigment.index.OverdueRentalIndex;
 import com.midlaj.olikassigment.model.Book;
 import com.midlaj.olikassigment.model.Rental;
 import com.midlaj.olikassigment.repository.RentalRepository;
+import com.midlaj.olikassigment.util.CursorUtils;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = MetricsConfig.SERVICE_TIMER, histogram = true)
 public class RentalServiceImpl implements RentalService {
 
 
@@ -19,32 +42,39 @@ public class RentalServiceImpl implements RentalService {
 
     private final BookService bookService;
 
+    private final OverdueRentalIndex overdueRentalIndex;
 
-    public RentalServiceImpl(RentalRepository rentalRepository, BookService bookService) {
+    private final AvailabilityIndex availabilityIndex;
+
+    private final CacheManager cacheManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    public RentalServiceImpl(RentalRepository rentalRepository, BookService bookService, OverdueRentalIndex overdueRentalIndex,
+                             AvailabilityIndex availabilityIndex, CacheManager cacheManager) {
         this.rentalRepository = rentalRepository;
         this.bookService = bookService;
+        this.overdueRentalIndex = overdueRentalIndex;
+        this.availabilityIndex = availabilityIndex;
+        this.cacheManager = cacheManager;
     }
 
     /**
-     * For creating new rental
+     * For creating new rental. The book is checked out and the rental inserted in one transaction
      * @param rentalRequest
      * @return
      */
     @Override
+    @Transactional
     public Rental createNewRental(RentalRequest rentalRequest) {
 
         /**
-         * Check if the book is present with bookId
+         * Mark the book as rented out if it is available, throws if the book is missing or already rented out
          */
-        Book book = bookService.getBookById(rentalRequest.bookId());
-
-
-        /**
-         * Check if the book is already rented out
-         */
-        if (!book.getAvailable()) {
-            throw new AlreadyRentedException("Book is not available.");
-        }
+        bookService.checkoutBook(rentalRequest.bookId());
+        availabilityIndex.onRented(rentalRequest.bookId());
 
         /**
          * Create new rental object with current date as rental date and null as return date
@@ -56,26 +86,22 @@ public class RentalServiceImpl implements RentalService {
                 .returnDate(null)
                 .build();
 
-        Rental createdRental = rentalRepository.save(newRental);
-
-
-        /**
-         * Set availability of book to false and save
-         */
-        book.setAvailable(false);
-        bookService.saveBook(book);
-
-        return createdRental;
+        Rental savedRental = rentalRepository.save(newRental);
+        overdueRentalIndex.onRented(savedRental);
+        return savedRental;
     }
 
 
 
     /**
-     * For returning book
+     * For returning book. The rental and the book are updated in one transaction, replayed with backoff
+     * when a concurrent update of the same rows is detected through their version
      * @param rentalId
      * @return rental object
      */
     @Override
+    @Transactional
+    @RentalRetry("returnBook")
     public Rental returnBook(Long rentalId)  {
         /**
          * Checking if the rental is present or not
@@ -89,43 +115,227 @@ public class RentalServiceImpl implements RentalService {
         if (rental.getReturnDate() != null) throw new AlreadyRentedException("Book already returned");
 
         /**
-         * Mark the book available and save
+         * Mark the book available
          */
-        Book book = bookService.getBookById(rental.getBookId());
-        book.setAvailable(true);
-        bookService.saveBook(book);
+        bookService.checkinBook(rental.getBookId());
+        availabilityIndex.onReturned(rental.getBookId());
 
 
         /**
          *  Update return date in rental record
          */
         rental.setReturnDate(LocalDate.now());
-        return rentalRepository.save(rental);
+        Rental savedRental = rentalRepository.save(rental);
+        overdueRentalIndex.onReturned(savedRental);
+        return savedRental;
+    }
+
+    /**
+     * For renting out several books at once. Every book is loaded with one IN query, the rentals are
+     * inserted and the availability flips are flushed as JDBC batches, all in one transaction.
+     * Books that are missing or not available are reported per item and do not fail the batch
+     * @param rentalRequests
+     * @return result of every request in the given order
+     */
+    @Override
+    @Transactional
+    @RentalRetry("createNewRentals")
+    public List<BatchItemResult> createNewRentals(List<RentalRequest> rentalRequests) {
+
+        /**
+         * Load every requested book with a single query
+         */
+        Map<Long, Book> books = bookService.getBooksByIds(rentalRequests.stream().map(RentalRequest::bookId).toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+        List<Rental> newRentals = new ArrayList<>();
+        List<BatchItemResult> results = new ArrayList<>();
+        LocalDate rentalDate = LocalDate.now();
+
+        for (RentalRequest rentalRequest : rentalRequests) {
+            Book book = books.get(rentalRequest.bookId());
+
+            if (book == null) {
+                results.add(new BatchItemResult(rentalRequest.bookId(), BatchItemStatus.NOT_FOUND, null));
+            } else if (!book.getAvailable()) {
+
+                /**
+                 * Also covers the same book requested twice in one batch
+                 */
+                results.add(new BatchItemResult(rentalRequest.bookId(), BatchItemStatus.NOT_AVAILABLE, null));
+            } else {
+
+                /**
+                 * The book is managed, the flip is written on flush with a version check. Its cached copy is
+                 * dropped once the transaction commits, see CacheConfig
+                 */
+                book.setAvailable(false);
+                cacheManager.getCache(CacheConfig.BOOKS).evict(book.getId());
+                availabilityIndex.onRented(book.getId());
+
+                Rental newRental = Rental.builder()
+                        .renterName(rentalRequest.renterName())
+                        .bookId(rentalRequest.bookId())
+                        .rentalDate(rentalDate)
+                        .returnDate(null)
+                        .build();
+                newRentals.add(newRental);
+                results.add(new BatchItemResult(rentalRequest.bookId(), BatchItemStatus.RENTED, newRental));
+            }
+        }
+
+        rentalRepository.saveAll(newRentals).forEach(overdueRentalIndex::onRented);
+        return results;
+    }
+
+    /**
+     * For returning several books at once. Rentals and their books are loaded with one IN query each and
+     * the updates are flushed as JDBC batches, all in one transaction. Rentals that are missing or already
+     * returned are reported per item and do not fail the batch
+     * @param rentalIds
+     * @return result of every rental id in the given order
+     */
+    @Override
+    @Transactional
+    @RentalRetry("returnBooks")
+    public List<BatchItemResult> returnBooks(List<Long> rentalIds) {
+
+        /**
+         * Load every requested rental with a single query
+         */
+        Map<Long, Rental> rentals = rentalRepository.findAllById(rentalIds)
+                .stream()
+                .collect(Collectors.toMap(Rental::getId, Function.identity()));
+
+        List<Long> returnedBookIds = new ArrayList<>();
+        List<BatchItemResult> results = new ArrayList<>();
+        LocalDate returnDate = LocalDate.now();
+
+        for (Long rentalId : rentalIds) {
+            Rental rental = rentals.get(rentalId);
+
+            if (rental == null) {
+                results.add(new BatchItemResult(rentalId, BatchItemStatus.NOT_FOUND, null));
+            } else if (rental.getReturnDate() != null) {
+
+                /**
+                 * Also covers the same rental given twice in one batch
+                 */
+                results.add(new BatchItemResult(rentalId, BatchItemStatus.ALREADY_RETURNED, rental));
+            } else {
+                rental.setReturnDate(returnDate);
+                returnedBookIds.add(rental.getBookId());
+                overdueRentalIndex.onReturned(rental);
+                results.add(new BatchItemResult(rentalId, BatchItemStatus.RETURNED, rental));
+            }
+        }
+
+        /**
+         * Mark every returned book available, loaded with a single query
+         */
+        if (!returnedBookIds.isEmpty()) {
+            bookService.getBooksByIds(returnedBookIds).forEach(book -> {
+                book.setAvailable(true);
+                cacheManager.getCache(CacheConfig.BOOKS).evict(book.getId());
+                availabilityIndex.onReturned(book.getId());
+            });
+        }
+
+        return results;
     }
 
     /**
-     * For finding overdue rentals
+     * For finding overdue rentals page by page, in rental date order. The page is read from the overdue
+     * index when it is loaded, otherwise by seeking into the partial index on open rentals
      * @param days
-     * @return
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of overdue rental
      */
     @Override
-    public List<Rental> findOverdueRentals(Integer days) {
+    @Transactional(readOnly = true)
+    public CursorPage<Rental> findOverdueRentals(Integer days, String after, Integer limit) {
 
         /**
          * setting new date using the days given
          */
         LocalDate currentDate = LocalDate.now().minusDays(days);
 
-        return rentalRepository.findByRentalDateBeforeAndReturnDateIsNull(currentDate);
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        RentalDateKey position = CursorUtils.decodeRentalDate(after);
+
+        if (overdueRentalIndex.isReady()) {
+            return findIndexedOverdueRentals(currentDate, position, pageSize);
+        }
+
+        List<Rental> rentals = position == null
+                ? rentalRepository.findByRentalDateBeforeAndReturnDateIsNullOrderByRentalDateAscIdAsc(currentDate, Limit.of(pageSize + 1))
+                : rentalRepository.findOverdueAfter(currentDate, position.rentalDate(), position.id(), Limit.of(pageSize + 1));
+        return CursorUtils.toKeysetPage(rentals, pageSize,
+                rental -> CursorUtils.encodeRentalDate(new RentalDateKey(rental.getRentalDate(), rental.getId())));
+    }
+
+    /**
+     * Reads the positions of a page from the overdue index and loads only those rentals by id.
+     * Rentals already returned through another instance are dropped from the index and the page is
+     * topped up with the next positions, so it stays full
+     */
+    private CursorPage<Rental> findIndexedOverdueRentals(LocalDate currentDate, RentalDateKey position, int pageSize) {
+        List<Rental> open = new ArrayList<>(pageSize + 1);
+        RentalDateKey from = position;
+        while (open.size() <= pageSize) {
+            List<RentalDateKey> keys = overdueRentalIndex.findOverdue(currentDate, from, pageSize + 1 - open.size());
+            if (keys.isEmpty()) break;
+
+            Map<Long, Rental> rentals = rentalRepository.findAllById(keys.stream().map(RentalDateKey::id).toList())
+                    .stream()
+                    .collect(Collectors.toMap(Rental::getId, Function.identity()));
+            for (RentalDateKey key : keys) {
+                Rental rental = rentals.get(key.id());
+                if (rental == null || rental.getReturnDate() != null) {
+                    overdueRentalIndex.discard(key);
+                } else {
+                    open.add(rental);
+                }
+            }
+            from = keys.get(keys.size() - 1);
+        }
+        return CursorUtils.toKeysetPage(open, pageSize,
+                rental -> CursorUtils.encodeRentalDate(new RentalDateKey(rental.getRentalDate(), rental.getId())));
+    }
+
+    /**
+     * to hand every overdue rental to the consumer one by one in rental date order, without holding them
+     * in memory. Each rental is detached once consumed so the persistence context stays small
+     * @param days
+     * @param consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOverdueRentals(Integer days, Consumer<Rental> consumer) {
+        LocalDate currentDate = LocalDate.now().minusDays(days);
+
+        try (Stream<Rental> rentals = rentalRepository.streamOverdue(currentDate)) {
+            rentals.forEach(rental -> {
+                consumer.accept(rental);
+                entityManager.detach(rental);
+            });
+        }
     }
 
     /**
-     * For retrieving every rental data
-     * @return
+     * For retrieving rental data page by page, seeking past the id given in the cursor
+     * @param after cursor of the previous page, null for the first page
+     * @param limit page size
+     * @return page of rental
      */
     @Override
-    public List<Rental> getAllRentals() {
-        return rentalRepository.findAll();
+    @Transactional(readOnly = true)
+    public CursorPage<Rental> getAllRentals(String after, Integer limit) {
+        int pageSize = CursorUtils.normalizeLimit(limit);
+        List<Rental> rentals = rentalRepository.findByIdGreaterThanOrderByIdAsc(CursorUtils.decode(after), Limit.of(pageSize + 1));
+        return CursorUtils.toPage(rentals, pageSize, Rental::getId);
     }
 
     /**
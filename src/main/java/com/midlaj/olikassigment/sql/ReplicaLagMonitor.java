@@ -0,0 +1,157 @@
+package com.midlaj.olikassigment.sql;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the replay lag of the read replicas. Every replica is asked for its lag on a fixed delay,
+ * the ones answering with a lag up to the maximum lag are healthy and take the read only transactions in
+ * turn. A replica that fails the check, falls behind or lost its connection to the primary is skipped until a later check passes, and read
+ * only transactions go to the primary while no replica is healthy. Until the first check every replica
+ * is unhealthy.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    /**
+     * Replay lag in seconds, 0 when the replica has replayed everything it received, so an idle primary
+     * does not make its replicas look behind, and 0 when the node is not in recovery at all. Null when the
+     * replica is not streaming from the primary, it has then replayed everything it received however far
+     * behind it is
+     */
+    static final String LAG_QUERY = """
+            select case when not pg_is_in_recovery() then 0
+                        when not exists (select 1 from pg_stat_wal_receiver where status = 'streaming') then null
+                        when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                        else extract(epoch from now() - pg_last_xact_replay_timestamp()) end""";
+
+    private final Map<String, DataSource> replicas;
+
+    private final double maxLagSeconds;
+
+    private final int queryTimeoutSeconds;
+
+    private final Map<String, Double> lags = new LinkedHashMap<>();
+
+    private volatile List<String> healthy = Collections.emptyList();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    /**
+     * @param replicas data source of every replica by its name, in order
+     * @param maxLag replicas further behind are skipped
+     * @param queryTimeout timeout of the lag query
+     */
+    public ReplicaLagMonitor(Map<String, DataSource> replicas, Duration maxLag, Duration queryTimeout) {
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.queryTimeoutSeconds = (int) Math.max(1, queryTimeout.toSeconds());
+        replicas.keySet().forEach(name -> lags.put(name, Double.NaN));
+    }
+
+    public Map<String, DataSource> replicas() {
+        return replicas;
+    }
+
+    /**
+     * Asks every replica for its lag and replaces the healthy replicas with the ones within the maximum lag
+     */
+    @Scheduled(initialDelayString = "PT0S", fixedDelayString = "${library.replicas.lag-check-interval:PT5S}")
+    public void check() {
+        List<String> current = new ArrayList<>(replicas.size());
+        replicas.forEach((name, dataSource) -> {
+            double lag = lag(name, dataSource);
+            synchronized (lags) {
+                lags.put(name, lag);
+            }
+            if (lag <= maxLagSeconds) {
+                current.add(name);
+            } else if (healthy.contains(name)) {
+                log.warn("Replica {} skipped, lag {}s", name, lag);
+            }
+        });
+        if (!current.isEmpty() && healthy.isEmpty()) {
+            log.info("Read only transactions routed to replicas {}", current);
+        }
+        healthy = List.copyOf(current);
+    }
+
+    /**
+     * Picks the replica for a read only transaction, the healthy replicas take turns
+     * @return name of the replica, null when no replica is healthy and the primary has to be used
+     */
+    public String nextReplica() {
+        List<String> current = healthy;
+        if (current.isEmpty()) {
+            fallbackCount.incrementAndGet();
+            return null;
+        }
+        return current.get(Math.floorMod(next.getAndIncrement(), current.size()));
+    }
+
+    /**
+     * @return names of the replicas within the maximum lag at the last check
+     */
+    public List<String> healthyReplicas() {
+        return healthy;
+    }
+
+    /**
+     * @param name
+     * @return lag of the replica in seconds at the last check, NaN when it did not answer
+     */
+    public double lagSeconds(String name) {
+        synchronized (lags) {
+            return lags.getOrDefault(name, Double.NaN);
+        }
+    }
+
+    /**
+     * @return number of read only transactions sent to the primary because no replica was healthy
+     */
+    public long fallbackCount() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * Closes the replica pools
+     */
+    @Override
+    public void close() {
+        replicas.values().forEach(dataSource -> {
+            if (dataSource instanceof HikariDataSource pool) pool.close();
+        });
+    }
+
+    private double lag(String name, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                if (!resultSet.next()) return Double.NaN;
+
+                double lag = resultSet.getDouble(1);
+                return resultSet.wasNull() ? Double.NaN : lag;
+            }
+        } catch (SQLException ex) {
+            log.warn("Lag check of replica {} failed: {}", name, ex.getMessage());
+            return Double.NaN;
+        }
+    }
+}
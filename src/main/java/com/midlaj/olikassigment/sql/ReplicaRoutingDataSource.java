@@ -0,0 +1,42 @@
+package com.midlaj.olikassigment.sql;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Data source sending the connections of read only transactions to a healthy read replica and every other
+ * connection to the primary. The replica is picked by ReplicaLagMonitor, the primary is used when no
+ * replica is healthy.
+ * The read only flag of a transaction is only bound once the transaction has begun, after the transaction
+ * manager asked for its connection, so this data source has to be used behind a LazyConnectionDataSourceProxy,
+ * which only takes the connection on the first statement. See ReplicaRoutingConfig.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor monitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaLagMonitor monitor) {
+        this.monitor = monitor;
+
+        Map<Object, Object> targets = new HashMap<>(monitor.replicas());
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) return PRIMARY;
+
+        String replica = monitor.nextReplica();
+        return replica != null ? replica : PRIMARY;
+    }
+}
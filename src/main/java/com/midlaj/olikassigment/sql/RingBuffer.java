@@ -0,0 +1,45 @@
+package com.midlaj.olikassigment.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the latest entries up to its capacity, the oldest entry is overwritten once it is full
+ */
+class RingBuffer<T> {
+
+    private final Object[] entries;
+
+    private int next;
+
+    private int size;
+
+    RingBuffer(int capacity) {
+        this.entries = new Object[Math.max(1, capacity)];
+    }
+
+    synchronized void add(T entry) {
+        entries[next] = entry;
+        next = (next + 1) % entries.length;
+        size = Math.min(size + 1, entries.length);
+    }
+
+    /**
+     * @return entries, newest first
+     */
+    @SuppressWarnings("unchecked")
+    synchronized List<T> snapshot() {
+        List<T> snapshot = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            snapshot.add((T) entries[(next - i + entries.length) % entries.length]);
+        }
+        return snapshot;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(entries, null);
+        next = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.midlaj.olikassigment.sql;
+
+import com.midlaj.olikassigment.dto.SqlStatsReport;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint /actuator/sqlstats listing the latest slow and repeated queries, a DELETE forgets them
+ */
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+
+    private final SqlStatsRecorder recorder;
+
+    public SqlStatsEndpoint(SqlStatsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public SqlStatsReport report() {
+        return recorder.report();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        recorder.clear();
+    }
+}
@@ -0,0 +1,59 @@
+package com.midlaj.olikassigment.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens the sql statistics of every request and publishes its statement count and statement time,
+ * tagged by path pattern, as library.request.sql.statements and library.request.sql.duration
+ */
+@Slf4j
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    private final SqlStatsRecorder recorder;
+
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatsFilter(SqlStatsRecorder recorder, MeterRegistry meterRegistry) {
+        this.recorder = recorder;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        recorder.begin(() -> request.getMethod() + " " + uri(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatsRecorder.RequestStats stats = recorder.end();
+            String uri = uri(request);
+            DistributionSummary.builder("library.request.sql.statements")
+                    .tag("method", request.getMethod()).tag("uri", uri)
+                    .register(meterRegistry).record(stats.statements());
+            Timer.builder("library.request.sql.duration")
+                    .tag("method", request.getMethod()).tag("uri", uri)
+                    .register(meterRegistry).record(stats.nanos(), TimeUnit.NANOSECONDS);
+            log.debug("{} {} ran {} statements in {} ms", request.getMethod(), uri, stats.statements(), stats.nanos() / 1_000_000);
+        }
+    }
+
+    /**
+     * The path pattern of the matched handler, so requests of different ids share their meters
+     */
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
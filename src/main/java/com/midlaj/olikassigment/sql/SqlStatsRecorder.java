@@ -0,0 +1,141 @@
+package com.midlaj.olikassigment.sql;
+
+import com.midlaj.olikassigment.dto.RepeatedQuery;
+import com.midlaj.olikassigment.dto.SlowQuery;
+import com.midlaj.olikassigment.dto.SqlStatsReport;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collects the statements run through StatementStatsDataSource. Statements of a request are counted and
+ * timed in the request statistics of its thread, opened and closed by SqlStatsFilter. A select the request
+ * runs at least the repeated query threshold times is kept as a repeated query, the usual sign of an
+ * association loaded one entity at a time. Statements slower than the slow query threshold are kept as
+ * slow queries, in or outside requests. Both are kept in bounded ring buffers, the oldest ones are dropped.
+ */
+@Slf4j
+public class SqlStatsRecorder {
+
+    private final ThreadLocal<RequestStats> current = new ThreadLocal<>();
+
+    private final long slowQueryThresholdNanos;
+
+    private final int repeatedQueryThreshold;
+
+    private final RingBuffer<SlowQuery> slowQueries;
+
+    private final RingBuffer<RepeatedQuery> repeatedQueries;
+
+    private final AtomicLong slowQueryCount = new AtomicLong();
+
+    public SqlStatsRecorder(Duration slowQueryThreshold, int repeatedQueryThreshold, int bufferSize) {
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+        this.repeatedQueryThreshold = repeatedQueryThreshold;
+        this.slowQueries = new RingBuffer<>(bufferSize);
+        this.repeatedQueries = new RingBuffer<>(bufferSize);
+    }
+
+    /**
+     * Opens the statistics of a request on the current thread
+     * @param request describes the request, only called when a statement is flagged
+     */
+    public void begin(Supplier<String> request) {
+        current.set(new RequestStats(request));
+    }
+
+    /**
+     * Closes the statistics of the request on the current thread and keeps its repeated selects
+     * @return statistics of the request, null when none was opened
+     */
+    public RequestStats end() {
+        RequestStats stats = current.get();
+        if (stats == null) return null;
+        current.remove();
+
+        Instant now = Instant.now();
+        stats.selects.forEach((sql, executions) -> {
+            if (executions >= repeatedQueryThreshold) {
+                String request = stats.request.get();
+                log.warn("Possible N+1 in {}: {} executions of {}", request, executions, sql);
+                repeatedQueries.add(new RepeatedQuery(now, request, sql, executions));
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * Records an executed statement
+     * @param sql statement text, null when unknown
+     * @param nanos execution time
+     */
+    void record(String sql, long nanos) {
+        RequestStats stats = current.get();
+        if (stats != null) {
+            stats.statements++;
+            stats.nanos += nanos;
+            if (sql != null && isSelect(sql)) {
+                stats.selects.merge(sql, 1, Integer::sum);
+            }
+        }
+
+        if (nanos >= slowQueryThresholdNanos) {
+            slowQueryCount.incrementAndGet();
+            String request = stats != null ? stats.request.get() : Thread.currentThread().getName();
+            slowQueries.add(new SlowQuery(Instant.now(), request, sql, nanos / 1_000_000.0));
+        }
+    }
+
+    public long slowQueryCount() {
+        return slowQueryCount.get();
+    }
+
+    public SqlStatsReport report() {
+        return new SqlStatsReport(slowQueryThresholdNanos / 1_000_000, repeatedQueryThreshold, slowQueryCount.get(),
+                slowQueries.snapshot(), repeatedQueries.snapshot());
+    }
+
+    /**
+     * Forgets the kept slow and repeated queries
+     */
+    public void clear() {
+        slowQueries.clear();
+        repeatedQueries.clear();
+    }
+
+    private static boolean isSelect(String sql) {
+        String statement = sql.stripLeading();
+        return statement.regionMatches(true, 0, "select", 0, 6) || statement.regionMatches(true, 0, "with", 0, 4);
+    }
+
+    /**
+     * Statement count and time of one request, only touched by the thread handling it
+     */
+    public static final class RequestStats {
+
+        private final Supplier<String> request;
+
+        private final Map<String, Integer> selects = new HashMap<>();
+
+        private int statements;
+
+        private long nanos;
+
+        private RequestStats(Supplier<String> request) {
+            this.request = request;
+        }
+
+        public int statements() {
+            return statements;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+    }
+}
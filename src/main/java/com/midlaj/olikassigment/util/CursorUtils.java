@@ -0,0 +1,152 @@
+package com.midlaj.olikassigment.util;
+
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.RentalDateKey;
+import com.midlaj.olikassigment.exception.InvalidCursorException;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for keyset (seek) pagination. A cursor is the last id of a page encoded as an opaque
+ * url-safe string, so clients never depend on its content.
+ */
+public class CursorUtils {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final int DEFAULT_LIMIT = 50;
+
+    public static final int MAX_LIMIT = 500;
+
+    private static final String PREFIX = "id:";
+
+    private static final String RENTAL_DATE_PREFIX = "rd:";
+
+    /**
+     * Encodes the last id of a page as an opaque cursor
+     *
+     * @param id
+     * @return cursor string
+     */
+    public static String encode(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor given by a client. A null or blank cursor means the first page
+     *
+     * @param cursor
+     * @return id after which the next page starts
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new InvalidCursorException("Invalid page cursor");
+            }
+            return Long.parseLong(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException("Invalid page cursor");
+        }
+    }
+
+    /**
+     * Encodes the last position of an overdue rental page as an opaque cursor
+     *
+     * @param key
+     * @return cursor string
+     */
+    public static String encodeRentalDate(RentalDateKey key) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((RENTAL_DATE_PREFIX + key.rentalDate() + ":" + key.id()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes an overdue rental cursor given by a client. A null or blank cursor means the first page
+     *
+     * @param cursor
+     * @return position after which the next page starts, null for the first page
+     */
+    public static RentalDateKey decodeRentalDate(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(':');
+            if (!value.startsWith(RENTAL_DATE_PREFIX) || separator <= RENTAL_DATE_PREFIX.length()) {
+                throw new InvalidCursorException("Invalid page cursor");
+            }
+            return new RentalDateKey(LocalDate.parse(value.substring(RENTAL_DATE_PREFIX.length(), separator)),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidCursorException("Invalid page cursor");
+        }
+    }
+
+    /**
+     * Clamps the requested page size between 1 and MAX_LIMIT
+     *
+     * @param limit
+     * @return page size
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Builds a page from rows fetched with one row more than the page size. That extra row only tells
+     * whether another page exists and is not returned.
+     *
+     * @param fetched rows fetched with limit + 1
+     * @param limit   page size
+     * @param idOf    id extractor of a row
+     * @return page with the next cursor
+     */
+    public static <T> CursorPage<T> toPage(List<T> fetched, int limit, Function<T, Long> idOf) {
+        return toKeysetPage(fetched, limit, row -> encode(idOf.apply(row)));
+    }
+
+    /**
+     * Same as toPage for listings ordered by something other than the id
+     *
+     * @param fetched  rows fetched with limit + 1
+     * @param limit    page size
+     * @param cursorOf cursor of a row
+     * @return page with the next cursor
+     */
+    public static <T> CursorPage<T> toKeysetPage(List<T> fetched, int limit, Function<T, String> cursorOf) {
+        if (fetched.size() <= limit) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new CursorPage<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+
+    /**
+     * Response headers carrying the next cursor of a page
+     *
+     * @param page
+     * @return headers
+     */
+    public static HttpHeaders nextCursorHeaders(CursorPage<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        if (page.nextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return headers;
+    }
+}
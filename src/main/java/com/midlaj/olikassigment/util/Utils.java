@@ -1,5 +1,8 @@
 package com.midlaj.olikassigment.util;
 
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.util.Locale;
 import java.util.Random;
 
 public class Utils {
@@ -20,17 +23,54 @@ public class Utils {
             isbn.append(random.nextInt(10));
         }
 
-        /**
-         * Calculate the check digit
-         */
+        isbn.append(checkDigit(isbn));
+        return isbn.toString();
+    }
+
+    /**
+     * A static method to generate the valid Isbn13 number of a sequence number, for generating large
+     * catalogues where random numbers would collide. Different numbers below 10^9 give different isbns,
+     * which never collide with the random ones since they use the 979 prefix
+     *
+     * @param number sequence number, from 0 to 999999999
+     * @return isbn13 number as string
+     */
+    public static String isbn13(long number) {
+        if (number < 0 || number >= 1_000_000_000L) {
+            throw new IllegalArgumentException("Isbn sequence number out of range: " + number);
+        }
+        StringBuilder isbn = new StringBuilder("979");
+        String digits = Long.toString(number);
+        isbn.append("0".repeat(9 - digits.length())).append(digits);
+
+        isbn.append(checkDigit(isbn));
+        return isbn.toString();
+    }
+
+    /**
+     * A static method to find the database constraint a failed write violated
+     *
+     * @param ex exception thrown by the write
+     * @return constraint name in lower case, null when the database did not name one
+     */
+    public static String violatedConstraint(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculate the check digit of the first 12 digits
+     */
+    private static int checkDigit(CharSequence isbn) {
         int sum = 0;
         for (int i = 0; i < 12; i++) {
             int digit = Character.getNumericValue(isbn.charAt(i));
             sum += (i % 2 == 0) ? digit : digit * 3;
         }
-        int checkDigit = (10 - (sum % 10)) % 10;
-        isbn.append(checkDigit);
-
-        return isbn.toString();
+        return (10 - (sum % 10)) % 10;
     }
 }
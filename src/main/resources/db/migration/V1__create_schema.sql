@@ -0,0 +1,37 @@
+-- Initial schema, as previously generated by hibernate from the entities. Databases created by hibernate
+-- are baselined at this version, so it is kept exactly as generated, constraint names included
+
+create sequence author_seq start with 1 increment by 50;
+create sequence book_seq start with 1 increment by 50;
+create sequence rental_seq start with 1 increment by 50;
+
+create table author
+(
+    id               bigint        not null,
+    author_name      varchar(256)  not null,
+    author_biography varchar(1024) not null,
+    primary key (id)
+);
+
+create table book
+(
+    is_available     boolean      not null,
+    publication_year integer      not null,
+    author_id        bigint       not null,
+    id               bigint       not null,
+    book_title       varchar(256) not null,
+    book_isbn        varchar(255) not null unique,
+    primary key (id)
+);
+
+create table rental
+(
+    rental_date date         not null,
+    return_date date,
+    book_id     bigint       not null,
+    id          bigint       not null,
+    renter_name varchar(255) not null,
+    primary key (id)
+);
+
+alter table if exists book add constraint FKklnrv3weler2ftkweewlky958 foreign key (author_id) references author;
@@ -0,0 +1,38 @@
+-- Optimistic locking versions of books and rentals. A database created by hibernate after the versions were
+-- added to the entities already has them
+alter table book add column if not exists version bigint not null default 0;
+alter table rental add column if not exists version bigint not null default 0;
+
+-- The isbn unique constraint and the author foreign key get stable names, duplicate isbns are told apart from
+-- other integrity violations by the name. The generated names are looked up, they depend on how the schema was created
+do
+$$
+    declare
+        isbn_constraint   name;
+        author_constraint name;
+    begin
+        select conname into isbn_constraint
+        from pg_constraint
+        where conrelid = 'book'::regclass
+          and contype = 'u'
+          and conkey = array [(select attnum from pg_attribute where attrelid = 'book'::regclass and attname = 'book_isbn')];
+
+        select conname into author_constraint
+        from pg_constraint
+        where conrelid = 'book'::regclass
+          and contype = 'f'
+          and conkey = array [(select attnum from pg_attribute where attrelid = 'book'::regclass and attname = 'author_id')];
+
+        if isbn_constraint is null then
+            alter table book add constraint uk_book_isbn unique (book_isbn);
+        elsif isbn_constraint <> 'uk_book_isbn' then
+            execute format('alter table book rename constraint %I to uk_book_isbn', isbn_constraint);
+        end if;
+
+        if author_constraint is null then
+            alter table book add constraint fk_book_author foreign key (author_id) references author (id);
+        elsif author_constraint <> 'fk_book_author' then
+            execute format('alter table book rename constraint %I to fk_book_author', author_constraint);
+        end if;
+    end
+$$;
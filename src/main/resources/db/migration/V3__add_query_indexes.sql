@@ -0,0 +1,20 @@
+-- Indexes backing the repository queries, so they run as index scans instead of sequential scans
+
+-- AuthorRepository.findAuthorByName
+create index idx_author_name on author (author_name);
+
+-- BookRepository.findBooksByAuthorId
+create index idx_book_author_id on book (author_id);
+
+-- BookRepository.findBookByTitle and the title checks of book creation and import
+create index idx_book_title on book (book_title);
+
+-- BookRepository.findBooksByAvailableTrue/False, ordered by id
+create index idx_book_available on book (is_available, id);
+
+-- RentalRepository.existsByBookIdAndRentalDateIsNull and rental lookups by book
+create index idx_rental_book_id on rental (book_id);
+
+-- RentalRepository.findByRentalDateBeforeAndReturnDateIsNull, only open rentals are indexed
+-- so the index stays small while the rental history grows. Not expressible with @Index
+create index idx_rental_open_rental_date on rental (rental_date, id) where return_date is null;
@@ -0,0 +1,5 @@
+-- BookRepository.findSummariesByAuthorAfter seeks by author and id, so the books of an author are read
+-- from the index in page order. The single column author index is a prefix of it and is dropped
+create index idx_book_author_id_id on book (author_id, id);
+
+drop index idx_book_author_id;
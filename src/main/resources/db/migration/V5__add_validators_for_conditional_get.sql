@@ -0,0 +1,6 @@
+-- Validators of the conditional GETs of books and authors. Authors get an optimistic locking version like
+-- books, and both tables the time of their last change, maintained by hibernate and the availability updates
+alter table author add column version bigint not null default 0;
+alter table author add column updated_at timestamp(6) with time zone not null default now();
+
+alter table book add column updated_at timestamp(6) with time zone not null default now();
@@ -0,0 +1,25 @@
+package com.midlaj.olikassigment.benchmark;
+
+import com.midlaj.olikassigment.OlikAssigmentApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application without the web server, on the benchmark profile backed by an in memory H2
+ * database, so benchmarks call the services the way the controllers do
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * The profile is given as an argument, application.yml would otherwise add the dev profile
+     */
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(OlikAssigmentApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=benchmark");
+    }
+}
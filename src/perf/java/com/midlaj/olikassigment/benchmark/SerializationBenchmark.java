@@ -0,0 +1,83 @@
+package com.midlaj.olikassigment.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.model.Author;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.model.Rental;
+import com.midlaj.olikassigment.util.Utils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Json serialization of the listing responses, with the object mapper configured like the one of the
+ * application. Books are spread over a few authors with biographies of a realistic length
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    private static final Instant UPDATED_AT = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Param({"50", "500"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+
+    private List<Book> books;
+
+    private List<BookSummary> bookSummaries;
+
+    private List<Rental> rentals;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<Author> authors = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            authors.add(Author.builder().id(id).name("Author " + id).biography("Biography ".repeat(40))
+                    .version(0L).updatedAt(UPDATED_AT).build());
+        }
+
+        books = new ArrayList<>(size);
+        bookSummaries = new ArrayList<>(size);
+        rentals = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            Author author = authors.get((int) (id % authors.size()));
+            Book book = Book.builder().id(id).title("Book title " + id).author(author).isbn(Utils.isbn13(id))
+                    .publicationYear(2020).available(id % 3 != 0).version(0L).updatedAt(UPDATED_AT).build();
+            books.add(book);
+            bookSummaries.add(new BookSummary(book.getId(), book.getTitle(), book.getIsbn(), book.getPublicationYear(),
+                    book.getAvailable(), author.getId(), author.getName(), book.getVersion()));
+            rentals.add(Rental.builder().id(id).bookId(id).renterName("Renter " + id)
+                    .rentalDate(LocalDate.of(2024, 1, 1).plusDays(id % 300)).version(0L).build());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeBooks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public byte[] serializeBookSummaries() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bookSummaries);
+    }
+
+    @Benchmark
+    public byte[] serializeRentals() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(rentals);
+    }
+}
@@ -0,0 +1,79 @@
+package com.midlaj.olikassigment.benchmark;
+
+import com.midlaj.olikassigment.dto.AuthorRequest;
+import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.dto.RentalRequest;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.model.Rental;
+import com.midlaj.olikassigment.service.AuthorService;
+import com.midlaj.olikassigment.service.BookService;
+import com.midlaj.olikassigment.service.RentalService;
+import com.midlaj.olikassigment.util.Utils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write paths of the book and rental services, through the spring proxies with their transactions,
+ * caches and indexes, against the in memory database
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private BookService bookService;
+
+    private RentalService rentalService;
+
+    private Long authorId;
+
+    private Long bookId;
+
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        bookService = context.getBean(BookService.class);
+        rentalService = context.getBean(RentalService.class);
+
+        /**
+         * one author for the created books and one book rented out and returned over and over
+         */
+        authorId = context.getBean(AuthorService.class).createNewAuthor(new AuthorRequest("Benchmark author " + UUID.randomUUID(),
+                "Benchmark biography, long enough to pass the validation of the author request")).getId();
+        bookId = bookService.createNewBook(new BookRequest("Benchmark rented book", authorId, Utils.isbn13(0), 2020)).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Every invocation inserts a new book with a new title and isbn
+     */
+    @Benchmark
+    public Book createNewBook() {
+        long number = ++sequence;
+        return bookService.createNewBook(new BookRequest("Benchmark book " + number, authorId,
+                Utils.isbn13(number), 2020));
+    }
+
+    /**
+     * Rents the book out and returns it, so every invocation starts from an available book
+     */
+    @Benchmark
+    public Rental createNewRentalAndReturnBook() {
+        Rental rental = rentalService.createNewRental(new RentalRequest(bookId, "Benchmark renter"));
+        return rentalService.returnBook(rental.getId());
+    }
+}
@@ -0,0 +1,36 @@
+package com.midlaj.olikassigment.benchmark;
+
+import com.midlaj.olikassigment.annotation.MaxYearValidator;
+import com.midlaj.olikassigment.util.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request validation and isbn generation, run for every book request and every seeded or generated book
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ValidationBenchmark {
+
+    private final MaxYearValidator maxYearValidator = new MaxYearValidator();
+
+    /**
+     * Read from a field so the year is not constant folded
+     */
+    private Integer year = 2020;
+
+    @Benchmark
+    public boolean maxYearIsValid() {
+        return maxYearValidator.isValid(year, null);
+    }
+
+    @Benchmark
+    public String generateRandomIsbn13() {
+        return Utils.generateRandomIsbn13();
+    }
+}
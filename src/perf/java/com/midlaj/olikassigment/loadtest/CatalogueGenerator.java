@@ -0,0 +1,286 @@
+package com.midlaj.olikassigment.loadtest;
+
+import com.midlaj.olikassigment.OlikAssigmentApplication;
+import com.midlaj.olikassigment.model.Author;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.model.Rental;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.repository.RentalRepository;
+import com.midlaj.olikassigment.service.AuthorService;
+import com.midlaj.olikassigment.service.BookService;
+import com.midlaj.olikassigment.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fills a database with a synthetic catalogue large enough to reproduce production behaviour locally.
+ * Books per author, rentals per book and the words of the titles all follow Zipf distributions, so a few
+ * authors write many books and a few books are rented far more often than the rest. A share of the books
+ * is currently rented out, with open rentals spread over the last two months so some of them are overdue.
+ * <p>
+ * Rows are inserted in chunks through the same JDBC batched saves as the catalogue import. The application
+ * starts without the web server and without the in memory indexes, so restart the server once the catalogue
+ * is loaded to have them rebuilt. Isbns come from Utils.isbn13, continuing after the greatest 979 isbn
+ * stored as found by BookRepository.findMaxIsbnStartingWith, so repeated runs against the same database
+ * do not collide even after books were deleted. Titles are unique like the application requires, a title
+ * drawn again or already stored gets the isbn sequence number of its book appended.
+ * <p>
+ * Settings are application properties given as arguments, the profile defaults to local:
+ * library.generator.authors, books, rentals, rented-ratio, skew, chunk-size and seed.
+ */
+public final class CatalogueGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogueGenerator.class);
+
+    private static final String[] FIRST_NAMES = {"Ada", "Amara", "Arjun", "Chen", "Elena", "Fatima", "Hiro",
+            "Ibrahim", "Ines", "Jonas", "Kofi", "Leila", "Lucas", "Maya", "Midlaj", "Nadia", "Omar", "Priya",
+            "Rafael", "Sara", "Tomas", "Yusuf", "Zara"};
+
+    private static final String[] LAST_NAMES = {"Abe", "Banerjee", "Costa", "Dubois", "Eriksen", "Fischer",
+            "Garcia", "Haddad", "Ivanova", "Jensen", "Kim", "Lopez", "Mensah", "Nair", "Okafor", "Petrov",
+            "Quinn", "Rossi", "Silva", "Tanaka", "Usman", "Varga", "Wang"};
+
+    private static final String[] SYLLABLES = {"al", "an", "ar", "be", "ca", "de", "el", "en", "fa", "go",
+            "ha", "in", "ka", "la", "lo", "ma", "mi", "na", "or", "pa", "ra", "ri", "sa", "ta", "tu", "va", "ze"};
+
+    private static final int VOCABULARY_SIZE = 5_000;
+
+    private final AuthorService authorService;
+
+    private final BookService bookService;
+
+    private final BookRepository bookRepository;
+
+    private final RentalRepository rentalRepository;
+
+    private final int authors;
+
+    private final int books;
+
+    private final int rentals;
+
+    private final double rentedRatio;
+
+    private final double skew;
+
+    private final int chunkSize;
+
+    private final Random random;
+
+    private final String[] vocabulary;
+
+    private final String[] renters;
+
+    private final LocalDate today = LocalDate.now();
+
+    CatalogueGenerator(ConfigurableApplicationContext context) {
+        Environment environment = context.getEnvironment();
+        this.authorService = context.getBean(AuthorService.class);
+        this.bookService = context.getBean(BookService.class);
+        this.bookRepository = context.getBean(BookRepository.class);
+        this.rentalRepository = context.getBean(RentalRepository.class);
+        this.authors = environment.getProperty("library.generator.authors", Integer.class, 10_000);
+        this.books = environment.getProperty("library.generator.books", Integer.class, 100_000);
+        this.rentals = environment.getProperty("library.generator.rentals", Integer.class, 200_000);
+        this.rentedRatio = environment.getProperty("library.generator.rented-ratio", Double.class, 0.05);
+        this.skew = environment.getProperty("library.generator.skew", Double.class, 1.0);
+        this.chunkSize = environment.getProperty("library.generator.chunk-size", Integer.class, 2_000);
+        this.random = new Random(environment.getProperty("library.generator.seed", Long.class, 42L));
+        this.vocabulary = words(VOCABULARY_SIZE);
+        this.renters = words(1_000);
+    }
+
+    public static void main(String[] args) {
+        String[] arguments = Arrays.stream(args).anyMatch(arg -> arg.startsWith("--spring.profiles.active"))
+                ? args : append(args, "--spring.profiles.active=local");
+
+        /**
+         * The indexes would only hold the catalogue until this process exits, and timing millions of
+         * insert statements would only slow down the run
+         */
+        Map<String, Object> overrides = Map.of(
+                "library.sql-stats.enabled", false,
+                "library.isbn-index.enabled", false,
+                "library.search-index.enabled", false,
+                "library.availability-index.enabled", false,
+                "library.autocomplete.enabled", false,
+                "library.rental.overdue-index.enabled", false);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(OlikAssigmentApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(ctx -> ctx.getEnvironment().getPropertySources()
+                        .addFirst(new MapPropertySource("catalogueGenerator", overrides)))
+                .run(arguments)) {
+            new CatalogueGenerator(context).generate();
+        }
+    }
+
+    void generate() {
+        long started = System.nanoTime();
+
+        long[] authorIds = insertAuthors();
+        logger.info("Inserted {} authors", authorIds.length);
+
+        long[] bookIds = insertBooks(authorIds);
+        logger.info("Inserted {} books", bookIds.length);
+
+        insertRentalHistory(bookIds);
+        logger.info("Inserted {} returned rentals", rentals);
+
+        logger.info("Generated the catalogue in {} s", (System.nanoTime() - started) / 1_000_000_000);
+    }
+
+    private long[] insertAuthors() {
+        long[] ids = new long[authors];
+        List<Author> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < authors; i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                    + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + i;
+            chunk.add(Author.builder()
+                    .name(name)
+                    .biography(name + " writes about " + String.join(", ", vocabulary[random.nextInt(VOCABULARY_SIZE)],
+                            vocabulary[random.nextInt(VOCABULARY_SIZE)], vocabulary[random.nextInt(VOCABULARY_SIZE)])
+                            + " and has been published across many countries and languages.")
+                    .build());
+
+            if (chunk.size() == chunkSize || i == authors - 1) {
+                List<Author> saved = authorService.saveAuthors(chunk);
+                for (int j = 0; j < saved.size(); j++) {
+                    ids[i - saved.size() + 1 + j] = saved.get(j).getId();
+                }
+                chunk.clear();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Inserts the books, each rented book with its open rental
+     */
+    private long[] insertBooks(long[] authorIds) {
+        ZipfSampler authorSampler = new ZipfSampler(authorIds.length, skew, random);
+        ZipfSampler wordSampler = new ZipfSampler(VOCABULARY_SIZE, skew, random);
+
+        /**
+         * Generated isbns continue after the greatest one already stored, counting the books would reuse
+         * the isbns of books generated by an earlier run once some of them were deleted
+         */
+        long firstIsbn = bookRepository.findMaxIsbnStartingWith("979")
+                .map(isbn -> Long.parseLong(isbn.substring(3, 12)) + 1)
+                .orElse(0L);
+
+        long[] ids = new long[books];
+        Set<String> titles = new HashSet<>();
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < books; i++) {
+            String title = title(wordSampler);
+            if (!titles.add(title)) {
+                title = title + " " + (firstIsbn + i);
+            }
+            chunk.add(Book.builder()
+                    .title(title)
+                    .author(authorService.getAuthorReference(authorIds[authorSampler.sample(random)]))
+                    .isbn(Utils.isbn13(firstIsbn + i))
+                    .publicationYear(today.getYear() - (int) Math.min(300, Math.abs(random.nextGaussian()) * 30))
+                    .available(random.nextDouble() >= rentedRatio)
+                    .build());
+
+            if (chunk.size() == chunkSize || i == books - 1) {
+                /**
+                 * Titles stored by an earlier run, the words carry no digits so a suffixed title is new
+                 */
+                Set<String> stored = bookRepository.findExistingTitles(chunk.stream().map(Book::getTitle).toList());
+                for (int j = 0; j < chunk.size(); j++) {
+                    Book book = chunk.get(j);
+                    if (stored.contains(book.getTitle())) {
+                        book.setTitle(book.getTitle() + " " + (firstIsbn + i - chunk.size() + 1 + j));
+                    }
+                }
+
+                List<Book> saved = bookService.saveBooks(chunk);
+                List<Rental> openRentals = new ArrayList<>();
+                for (int j = 0; j < saved.size(); j++) {
+                    Book book = saved.get(j);
+                    ids[i - saved.size() + 1 + j] = book.getId();
+                    if (!book.getAvailable()) {
+                        openRentals.add(rental(book.getId(), today.minusDays(random.nextInt(60)), null));
+                    }
+                }
+                rentalRepository.saveAll(openRentals);
+                chunk.clear();
+            }
+        }
+        return ids;
+    }
+
+    private void insertRentalHistory(long[] bookIds) {
+        ZipfSampler bookSampler = new ZipfSampler(bookIds.length, skew, random);
+        List<Rental> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < rentals; i++) {
+            LocalDate rentalDate = today.minusDays(30 + random.nextInt(700));
+            chunk.add(rental(bookIds[bookSampler.sample(random)], rentalDate, rentalDate.plusDays(1 + random.nextInt(28))));
+
+            if (chunk.size() == chunkSize || i == rentals - 1) {
+                rentalRepository.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    private Rental rental(long bookId, LocalDate rentalDate, LocalDate returnDate) {
+        return Rental.builder()
+                .bookId(bookId)
+                .renterName(renters[random.nextInt(renters.length)])
+                .rentalDate(rentalDate)
+                .returnDate(returnDate)
+                .build();
+    }
+
+    private String title(ZipfSampler wordSampler) {
+        int length = 1 + random.nextInt(4);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            String word = vocabulary[wordSampler.sample(random)];
+            if (i > 0) title.append(' ');
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return title.toString();
+    }
+
+    /**
+     * Pronounceable made up words of two to four syllables, all different
+     */
+    private String[] words(int count) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < count) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words.toArray(String[]::new);
+    }
+
+    private static String[] append(String[] args, String arg) {
+        String[] arguments = Arrays.copyOf(args, args.length + 1);
+        arguments[args.length] = arg;
+        return arguments;
+    }
+}
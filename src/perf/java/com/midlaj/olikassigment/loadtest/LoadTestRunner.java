@@ -0,0 +1,356 @@
+package com.midlaj.olikassigment.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midlaj.olikassigment.util.CursorUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Replays a mix of read, checkout and return traffic against a running server and reports the throughput
+ * and latency percentiles of every operation.
+ * <p>
+ * It first pages through the book listing to learn a sample of book ids, author ids and title words, then
+ * starts one virtual thread per simulated client. Every client sends its next request as soon as the
+ * previous one is answered, popular books being picked with a Zipf distribution so checkouts contend the
+ * way they do in production. Returns give back the rentals opened by checkouts of the run. Requests sent
+ * during the warmup are not counted.
+ * <p>
+ * Arguments: --base-url (http://localhost:8080), --duration (PT60S), --warmup (PT10S), --clients (32),
+ * --mix (read:80,checkout:10,return:10), --catalogue (10000 book ids sampled), --skew (1.0).
+ * Conflicts (409) and rejections of the concurrency limit (503) are counted apart from errors.
+ */
+public final class LoadTestRunner {
+
+    private static final String READ = "read";
+
+    private static final String CHECKOUT = "checkout";
+
+    private static final String RETURN = "return";
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final String baseUrl;
+
+    private final Duration duration;
+
+    private final Duration warmup;
+
+    private final int clients;
+
+    private final Map<String, Integer> mix;
+
+    private final int catalogue;
+
+    private final double skew;
+
+    private final List<Long> bookIds = new ArrayList<>();
+
+    private final List<Long> authorIds = new ArrayList<>();
+
+    private final List<String> titleWords = new ArrayList<>();
+
+    private final ConcurrentLinkedQueue<Long> openRentals = new ConcurrentLinkedQueue<>();
+
+    private ZipfSampler bookSampler;
+
+    LoadTestRunner(Map<String, String> arguments) {
+        this.baseUrl = arguments.getOrDefault("base-url", "http://localhost:8080");
+        this.duration = Duration.parse(arguments.getOrDefault("duration", "PT60S"));
+        this.warmup = Duration.parse(arguments.getOrDefault("warmup", "PT10S"));
+        this.clients = Integer.parseInt(arguments.getOrDefault("clients", "32"));
+        this.mix = parseMix(arguments.getOrDefault("mix", "read:80,checkout:10,return:10"));
+        this.catalogue = Integer.parseInt(arguments.getOrDefault("catalogue", "10000"));
+        this.skew = Double.parseDouble(arguments.getOrDefault("skew", "1.0"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            arguments.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+
+        LoadTestRunner runner = new LoadTestRunner(arguments);
+        runner.discoverCatalogue();
+        runner.report(runner.run());
+    }
+
+    /**
+     * Pages through the book listing until enough book ids are known
+     */
+    void discoverCatalogue() throws IOException, InterruptedException {
+        String cursor = null;
+        do {
+            String url = baseUrl + "/api/book?limit=500" + (cursor == null ? "" : "&after=" + cursor);
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Listing the books failed with status " + response.statusCode());
+            }
+            for (JsonNode book : objectMapper.readTree(response.body())) {
+                bookIds.add(book.get("id").asLong());
+                authorIds.add(book.get("authorId").asLong());
+                titleWords.addAll(Arrays.asList(book.get("title").asText().split("\\s+")));
+            }
+            cursor = response.headers().firstValue(CursorUtils.NEXT_CURSOR_HEADER).orElse(null);
+        } while (cursor != null && bookIds.size() < catalogue);
+
+        if (bookIds.isEmpty()) throw new IllegalStateException("No books to test against, run CatalogueGenerator first");
+        bookSampler = new ZipfSampler(bookIds.size(), skew, new Random(42));
+        System.out.printf("Sampled %d books, %d clients for %s after a %s warmup%n", bookIds.size(), clients, duration, warmup);
+    }
+
+    /**
+     * Runs every client until the end of the test
+     * @return samples of every operation, merged over the clients
+     */
+    Map<String, Samples> run() throws Exception {
+        long now = System.nanoTime();
+        long measureFrom = now + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Future<Map<String, Samples>>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> runClient(measureFrom, end)));
+            }
+        }
+
+        Map<String, Samples> merged = new TreeMap<>();
+        for (Future<Map<String, Samples>> result : results) {
+            result.get().forEach((operation, samples) -> merged.computeIfAbsent(operation, o -> new Samples()).addAll(samples));
+        }
+        return merged;
+    }
+
+    private Map<String, Samples> runClient(long measureFrom, long end) {
+        Map<String, Samples> samples = new HashMap<>();
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            String kind = READ;
+            for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+                if ((pick -= entry.getValue()) < 0) {
+                    kind = entry.getKey();
+                    break;
+                }
+            }
+
+            Operation operation = switch (kind) {
+                case CHECKOUT -> checkout();
+                case RETURN -> giveBack();
+                default -> read();
+            };
+            long started = System.nanoTime();
+            int status = send(operation);
+            long latency = System.nanoTime() - started;
+            if (now >= measureFrom) {
+                samples.computeIfAbsent(operation.name(), o -> new Samples()).add(latency, status);
+            }
+        }
+        return samples;
+    }
+
+    private Operation read() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int pick = random.nextInt(100);
+        if (pick < 50) {
+            return Operation.get("GET /api/book/{id}", "/api/book/" + popularBook());
+        }
+        if (pick < 65) {
+            String word = titleWords.get(random.nextInt(titleWords.size()));
+            return Operation.get("GET /api/book/search", "/api/book/search?q=" + URLEncoder.encode(word, StandardCharsets.UTF_8));
+        }
+        if (pick < 80) {
+            return Operation.get("GET /api/book/author/{id}", "/api/book/author/" + authorIds.get(random.nextInt(authorIds.size())) + "?limit=20");
+        }
+        if (pick < 90) {
+            return Operation.get("GET /api/book/available", "/api/book/available?limit=20");
+        }
+        return Operation.get("GET /api/rental/overdue/{days}", "/api/rental/overdue/30?limit=20");
+    }
+
+    private Operation checkout() {
+        String body = "{\"bookId\":" + popularBook() + ",\"renterName\":\"load-test\"}";
+        return new Operation("POST /api/rental/new", "/api/rental/new", body, this::rememberRental);
+    }
+
+    /**
+     * Returns a rental opened by the run, checks out a book instead when there is none yet
+     */
+    private Operation giveBack() {
+        Long rentalId = openRentals.poll();
+        if (rentalId == null) return checkout();
+        return new Operation("POST /api/rental/return/{id}", "/api/rental/return/" + rentalId, "", null);
+    }
+
+    private long popularBook() {
+        return bookIds.get(bookSampler.sample(ThreadLocalRandom.current()));
+    }
+
+    private void rememberRental(String body) {
+        try {
+            openRentals.add(objectMapper.readTree(body).get("id").asLong());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable rental", e);
+        }
+    }
+
+    /**
+     * @return http status, 0 when the request failed without an answer
+     */
+    private int send(Operation operation) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + operation.path()))
+                .timeout(Duration.ofSeconds(30));
+        if (operation.body() == null) {
+            request.GET();
+        } else {
+            request.header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(operation.body()));
+        }
+
+        try {
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() / 100 == 2 && operation.onSuccess() != null) {
+                operation.onSuccess().accept(response.body());
+            }
+            return response.statusCode();
+        } catch (IOException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    void report(Map<String, Samples> results) {
+        double seconds = duration.toNanos() / 1e9;
+        System.out.printf("%n%-32s %9s %9s %7s %7s %7s %7s %9s %9s %9s %9s %9s%n", "operation", "requests", "req/s",
+                "ok", "409", "503", "error", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        Samples all = new Samples();
+        results.forEach((operation, samples) -> {
+            printRow(operation, samples, seconds);
+            all.addAll(samples);
+        });
+        printRow("total", all, seconds);
+    }
+
+    private static void printRow(String operation, Samples samples, double seconds) {
+        long[] latencies = samples.sorted();
+        StringBuilder row = new StringBuilder(String.format("%-32s %9d %9.1f %7d %7d %7d %7d", operation, latencies.length,
+                latencies.length / seconds, samples.ok, samples.conflicts, samples.rejected, samples.errors));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %9.2f", percentile(latencies, percentile) / 1e6));
+        }
+        row.append(String.format(" %9.2f", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6));
+        System.out.println(row);
+    }
+
+    /**
+     * Nearest rank percentile of sorted latencies
+     */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new TreeMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.split(":");
+            String kind = pair[0].trim();
+            if (!List.of(READ, CHECKOUT, RETURN).contains(kind)) {
+                throw new IllegalArgumentException("Unknown operation in the mix: " + kind);
+            }
+            weights.put(kind, Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * A request to send, onSuccess receives the body of a successful answer
+     */
+    private record Operation(String name, String path, String body, Consumer<String> onSuccess) {
+
+        static Operation get(String name, String path) {
+            return new Operation(name, path, null, null);
+        }
+    }
+
+    /**
+     * Latencies in nanoseconds and outcome counts of one operation, owned by one client until merged
+     */
+    static final class Samples {
+
+        private long[] latencies = new long[1024];
+
+        private int size;
+
+        private long ok;
+
+        private long conflicts;
+
+        private long rejected;
+
+        private long errors;
+
+        void add(long latency, int status) {
+            if (size == latencies.length) latencies = Arrays.copyOf(latencies, size * 2);
+            latencies[size++] = latency;
+
+            if (status / 100 == 2) ok++;
+            else if (status == 409) conflicts++;
+            else if (status == 503) rejected++;
+            else errors++;
+        }
+
+        void addAll(Samples other) {
+            if (size + other.size > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(size + other.size, latencies.length * 2));
+            }
+            System.arraycopy(other.latencies, 0, latencies, size, other.size);
+            size += other.size;
+            ok += other.ok;
+            conflicts += other.conflicts;
+            rejected += other.rejected;
+            errors += other.errors;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
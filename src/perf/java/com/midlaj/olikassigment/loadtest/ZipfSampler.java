@@ -0,0 +1,49 @@
+package com.midlaj.olikassigment.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks from 0 to n - 1 with a Zipf distribution, rank r is drawn with a probability proportional
+ * to 1 / (r + 1)^exponent. The cumulative distribution is kept as an array and searched, so a sample costs
+ * one binary search. Ranks are mapped through a shuffled permutation, so the popular items are spread over
+ * the id range instead of being the oldest ones.
+ */
+final class ZipfSampler {
+
+    private final double[] cumulative;
+
+    private final int[] permutation;
+
+    ZipfSampler(int n, double exponent, Random random) {
+        if (n <= 0) throw new IllegalArgumentException("Zipf sampler needs at least one item");
+
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+
+        permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+    }
+
+    /**
+     * @return index of an item, from 0 to n - 1
+     */
+    int sample(Random random) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, target);
+        if (index < 0) index = -index - 1;
+        return permutation[Math.min(index, cumulative.length - 1)];
+    }
+}
@@ -0,0 +1,89 @@
+package com.midlaj.olikassigment.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Zipf sampler tests, run with the perf profile
+ */
+public class ZipfSamplerTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void sample_WithExponentOne_ShouldFollowTheZipfDistribution() {
+        /**
+         * a thousand items, the most popular one is drawn with probability 1 / H(1000), about 0.134,
+         * and twice as often as the second one
+         */
+        Random random = new Random(42);
+        long[] counts = counts(new ZipfSampler(1_000, 1.0, random), 1_000, random);
+        Arrays.sort(counts);
+
+        double harmonic = 0;
+        for (int rank = 1; rank <= 1_000; rank++) {
+            harmonic += 1.0 / rank;
+        }
+
+        /**
+         * verifying
+         */
+        assertEquals(1 / harmonic, (double) counts[999] / SAMPLES, 0.005);
+        assertEquals(2.0, (double) counts[999] / counts[998], 0.15);
+        assertEquals(3.0, (double) counts[999] / counts[997], 0.3);
+    }
+
+    @Test
+    void sample_WithExponentZero_ShouldBeUniform() {
+        /**
+         * ten items drawn alike
+         */
+        Random random = new Random(42);
+        long[] counts = counts(new ZipfSampler(10, 0.0, random), 10, random);
+
+        /**
+         * verifying
+         */
+        for (long count : counts) {
+            assertEquals(0.1, (double) count / SAMPLES, 0.005);
+        }
+    }
+
+    @Test
+    void sample_ShouldSpreadThePopularItemsOverTheRange() {
+        /**
+         * two samplers over the same items with different shuffles
+         */
+        Random random = new Random(42);
+        int first = mostPopular(counts(new ZipfSampler(1_000, 1.2, random), 1_000, random));
+        int second = mostPopular(counts(new ZipfSampler(1_000, 1.2, random), 1_000, random));
+
+        /**
+         * verifying, the most popular item is not pinned to the first index
+         */
+        assertFalse(first == 0 && second == 0);
+        assertThrows(IllegalArgumentException.class, () -> new ZipfSampler(0, 1.0, random));
+    }
+
+    private static long[] counts(ZipfSampler sampler, int n, Random random) {
+        long[] counts = new long[n];
+        for (int i = 0; i < SAMPLES; i++) {
+            int item = sampler.sample(random);
+            assertTrue(item >= 0 && item < n);
+            counts[item]++;
+        }
+        return counts;
+    }
+
+    private static int mostPopular(long[] counts) {
+        int best = 0;
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > counts[best]) best = i;
+        }
+        return best;
+    }
+}
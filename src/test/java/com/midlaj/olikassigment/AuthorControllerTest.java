@@ -1,8 +1,15 @@
 package com.midlaj.olikassigment;
 
+import com.midlaj.olikassigment.dto.AuthorDeletionReport;
 import com.midlaj.olikassigment.dto.AuthorRequest;
+import com.midlaj.olikassigment.dto.ErrorResponse;
+import com.midlaj.olikassigment.dto.RentalRequest;
 import com.midlaj.olikassigment.model.Author;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.model.Rental;
 import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.util.Utils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,15 +17,20 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Integration Testing of Author Controller
@@ -35,6 +47,9 @@ public class AuthorControllerTest {
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private BookRepository bookRepository;
+
     private Long authorId = 1L;
 
     private String getBaseUrl() {
@@ -109,6 +124,33 @@ public class AuthorControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
+    /**
+     * Testing revalidating an unchanged author, api "api/author/{id}"
+     */
+    @Test
+    public void testGetAuthorByIdConditionally() {
+
+        /**
+         * first request, then the same request with the ETag received
+         */
+        ResponseEntity<Author> response = restTemplate.getForEntity(getBaseUrl() + "/" + authorId, Author.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getHeaders().getETag());
+        assertNotNull(response.getBody().getVersion());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(response.getHeaders().getETag());
+        ResponseEntity<Author> notModified = restTemplate.exchange(getBaseUrl() + "/" + authorId, HttpMethod.GET,
+                new HttpEntity<>(headers), Author.class);
+
+        /**
+         * checking the author is not sent again
+         */
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(response.getHeaders().getETag(), notModified.getHeaders().getETag());
+        assertEquals(response.getHeaders().getLastModified(), notModified.getHeaders().getLastModified());
+    }
+
 
     /**
      * Testing getting all authors, api "api/author"
@@ -157,5 +199,53 @@ public class AuthorControllerTest {
 
     }
 
+    /**
+     * Testing deleting an author with books, api DELETE "api/author/{id}"
+     */
+    @Test
+    public void testDeleteAuthorWithBooksReportsDeletedBooks() {
+
+        /**
+         * creating three books of the author, one of them rented out
+         */
+        Author author = authorRepository.findById(authorId).orElseThrow();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            books.add(bookRepository.save(Book.builder()
+                    .title("Test_Book_Title_" + UUID.randomUUID())
+                    .author(author)
+                    .isbn(Utils.generateRandomIsbn13())
+                    .publicationYear(2020)
+                    .available(true)
+                    .build()));
+        }
+        ResponseEntity<Rental> rental = restTemplate.postForEntity("http://localhost:" + port + "/api/rental/new",
+                new RentalRequest(books.get(0).getId(), "Test Renter"), Rental.class);
+        assertEquals(HttpStatus.CREATED, rental.getStatusCode());
+
+        /**
+         * an author with a book rented out is not deleted
+         */
+        ResponseEntity<ErrorResponse> inUse = restTemplate.exchange(getBaseUrl() + "/" + authorId, HttpMethod.DELETE, null, ErrorResponse.class);
+        assertEquals(HttpStatus.CONFLICT, inUse.getStatusCode());
+        assertEquals("IN_USE", inUse.getBody().error_name());
+        assertEquals(3, bookRepository.findIsbnsByAuthorId(authorId).size());
+
+        /**
+         * once the book is returned the author and its books are deleted, and the books are gone from the isbn index
+         */
+        restTemplate.postForEntity("http://localhost:" + port + "/api/rental/return/" + rental.getBody().getId(), null, Rental.class);
+        ResponseEntity<AuthorDeletionReport> response = restTemplate.exchange(getBaseUrl() + "/" + authorId, HttpMethod.DELETE, null,
+                AuthorDeletionReport.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new AuthorDeletionReport(authorId, 3), response.getBody());
+        assertFalse(authorRepository.existsById(authorId));
+        assertTrue(bookRepository.findIsbnsByAuthorId(authorId).isEmpty());
+
+        ResponseEntity<ErrorResponse> missing = restTemplate.getForEntity(
+                "http://localhost:" + port + "/api/book/isbn/" + books.get(1).getIsbn(), ErrorResponse.class);
+        assertEquals("Book not found", missing.getBody().message());
+    }
+
 
 }
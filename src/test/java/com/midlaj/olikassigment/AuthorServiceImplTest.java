@@ -1,10 +1,18 @@
 package com.midlaj.olikassigment;
 
+import com.midlaj.olikassigment.dto.AuthorDeletionReport;
 import com.midlaj.olikassigment.dto.AuthorRequest;
+import com.midlaj.olikassigment.dto.BookIsbn;
+import com.midlaj.olikassigment.dto.CursorPage;
 import com.midlaj.olikassigment.exception.DuplicateEntityException;
+import com.midlaj.olikassigment.exception.EntityInUseException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.index.AuthorIndexListener;
+import com.midlaj.olikassigment.index.BookIndexListener;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.repository.RentalRepository;
 import com.midlaj.olikassigment.service.AuthorService;
 import com.midlaj.olikassigment.service.AuthorServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,12 +40,25 @@ public class AuthorServiceImplTest {
     @Mock
     private AuthorRepository authorRepository;
 
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private RentalRepository rentalRepository;
+
+    @Mock
+    private BookIndexListener bookIndexListener;
+
+    @Mock
+    private AuthorIndexListener authorIndexListener;
+
     private AuthorService authorService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        authorService = new AuthorServiceImpl(authorRepository) {
+        authorService = new AuthorServiceImpl(authorRepository, bookRepository, rentalRepository, bookIndexListener,
+                authorIndexListener) {
         };
     }
 
@@ -142,18 +164,18 @@ public class AuthorServiceImplTest {
         /**
          * mocking dao call
          */
-        when(authorRepository.findAll()).thenReturn(authors);
+        when(authorRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(authors);
 
         /**
          * calling service method
          */
-        List<Author> result = authorService.getAuthors();
+        CursorPage<Author> result = authorService.getAuthors(null, null);
 
         /**
          * verifying
          */
-        assertEquals(authors.size(), result.size());
-        assertTrue(result.containsAll(authors));
+        assertEquals(authors.size(), result.items().size());
+        assertTrue(result.items().containsAll(authors));
     }
 
     @Test
@@ -163,18 +185,62 @@ public class AuthorServiceImplTest {
          */
         Long id = 1L;
         Author author = Author.builder().id(id).name("John Doe").biography("Biography").build();
-        when(authorRepository.findById(id)).thenReturn(Optional.of(author));
+        List<BookIsbn> books = List.of(new BookIsbn(10L, "9780000000001"), new BookIsbn(11L, "9780000000002"));
+        when(authorRepository.findByIdForUpdate(id)).thenReturn(Optional.of(author));
+        when(bookRepository.findIsbnsByAuthorId(id)).thenReturn(books);
+        when(rentalRepository.existsOpenRentalByAuthorId(id)).thenReturn(false);
+        when(bookRepository.deleteAvailableByAuthorId(id)).thenReturn(2);
 
         /**
          * calling service method
          */
-        authorService.deleteAuthorById(id);
+        AuthorDeletionReport result = authorService.deleteAuthorById(id);
+
+        /**
+         * verifying, books and author are deleted in bulk and the indexes are told
+         */
+        assertEquals(new AuthorDeletionReport(id, 2), result);
+        verify(authorRepository, times(1)).deleteInBulkById(id);
+        verify(authorRepository, never()).deleteById(id);
+        verify(bookIndexListener, times(1)).onBulkDelete(books);
+        verify(authorIndexListener, times(1)).onBulkDelete(id);
+    }
+
+    @Test
+    void deleteAuthorById_WithOpenRental_ShouldThrowEntityInUseException() {
+        /**
+         * mocking dao calls, a book of the author is rented out
+         */
+        Long id = 1L;
+        Author author = Author.builder().id(id).name("John Doe").biography("Biography").build();
+        when(authorRepository.findByIdForUpdate(id)).thenReturn(Optional.of(author));
+        when(rentalRepository.existsOpenRentalByAuthorId(id)).thenReturn(true);
+
+        /**
+         * verifying
+         */
+        assertThrows(EntityInUseException.class, () -> authorService.deleteAuthorById(id));
+        verify(bookRepository, never()).deleteAvailableByAuthorId(id);
+        verify(authorRepository, never()).deleteInBulkById(id);
+    }
+
+    @Test
+    void deleteAuthorById_WithBookRentedDuringDelete_ShouldThrowEntityInUseException() {
+        /**
+         * mocking dao calls, a book is checked out between the check and the delete so it is skipped
+         */
+        Long id = 1L;
+        Author author = Author.builder().id(id).name("John Doe").biography("Biography").build();
+        when(authorRepository.findByIdForUpdate(id)).thenReturn(Optional.of(author));
+        when(bookRepository.findIsbnsByAuthorId(id)).thenReturn(List.of(new BookIsbn(10L, "9780000000001"), new BookIsbn(11L, "9780000000002")));
+        when(bookRepository.deleteAvailableByAuthorId(id)).thenReturn(1);
 
         /**
          * verifying
          */
-        verify(authorRepository, times(1)).findById(id);
-        verify(authorRepository, times(1)).deleteById(id);
+        assertThrows(EntityInUseException.class, () -> authorService.deleteAuthorById(id));
+        verify(authorRepository, never()).deleteInBulkById(id);
+        verify(bookIndexListener, never()).onBulkDelete(any());
     }
 
     @Test
@@ -187,14 +253,14 @@ public class AuthorServiceImplTest {
         /**
          * mocking dao call
          */
-        when(authorRepository.findById(id)).thenReturn(Optional.empty());
+        when(authorRepository.findByIdForUpdate(id)).thenReturn(Optional.empty());
 
         /**
          * verifying
          */
         assertThrows(EntityNotFoundException.class, () -> authorService.deleteAuthorById(id));
-        verify(authorRepository, times(1)).findById(id);
-        verify(authorRepository, never()).deleteById(id);
+        verify(authorRepository, times(1)).findByIdForUpdate(id);
+        verify(authorRepository, never()).deleteInBulkById(id);
     }
 
     @Test
@@ -244,4 +310,51 @@ public class AuthorServiceImplTest {
         assertFalse(result);
         verify(authorRepository, times(1)).existsById(id);
     }
+
+    @Test
+    void getAuthorReference_ShouldNotLoadAuthor() {
+        /**
+         * mocking object for test
+         */
+        Long id = 1L;
+        Author reference = Author.builder().id(id).build();
+        when(authorRepository.getReferenceById(id)).thenReturn(reference);
+
+        /**
+         * calling service method
+         */
+        Author result = authorService.getAuthorReference(id);
+
+        /**
+         * verifying
+         */
+        assertEquals(reference, result);
+        verify(authorRepository, never()).findById(id);
+    }
+
+    @Test
+    void saveAuthors_ShouldSaveAllInOneCall() {
+        /**
+         * testing objects
+         */
+        List<Author> authors = List.of(
+                Author.builder().name("John Doe").biography("Biography").build(),
+                Author.builder().name("Jane Smith").biography("Biography").build());
+
+        /**
+         * mocking dao call
+         */
+        when(authorRepository.saveAll(authors)).thenReturn(authors);
+
+        /**
+         * calling service method
+         */
+        List<Author> result = authorService.saveAuthors(authors);
+
+        /**
+         * verifying
+         */
+        assertEquals(authors, result);
+        verify(authorRepository, never()).save(any(Author.class));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.dto.AuthorName;
+import com.midlaj.olikassigment.dto.BookTitle;
+import com.midlaj.olikassigment.dto.Suggestion;
+import com.midlaj.olikassigment.index.AutocompleteIndex;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Autocomplete index tests
+ */
+public class AutocompleteIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    private AutocompleteIndex autocompleteIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        autocompleteIndex = new AutocompleteIndex(bookRepository, authorRepository, true, 3);
+
+        /**
+         * test catalogue, titles sharing prefixes so edges of the trie get split
+         */
+        when(bookRepository.streamTitles()).thenReturn(Stream.of(
+                new BookTitle(1L, "The Hobbit", 1L),
+                new BookTitle(2L, "The Lord of the Rings", 1L),
+                new BookTitle(3L, "The Lost World", 2L),
+                new BookTitle(4L, "Theory of Everything", 2L),
+                new BookTitle(5L, "The Ladies' Paradise", 3L)));
+        when(authorRepository.streamNames()).thenReturn(Stream.of(
+                new AuthorName(1L, "Tolkien"),
+                new AuthorName(2L, "Thorne"),
+                new AuthorName(3L, "Émile Zola")));
+        autocompleteIndex.rebuild();
+    }
+
+    @Test
+    void suggest_WithPrefixEndingInsideAnEdge_ShouldReturnEntriesBelowIt() {
+        /**
+         * verifying, titles come in alphabetical order
+         */
+        assertEquals(List.of("The Lord of the Rings", "The Lost World"), texts(autocompleteIndex.suggest("the lo", 10)));
+        assertEquals(List.of("The Hobbit"), texts(autocompleteIndex.suggest("THE H", 10)));
+        assertTrue(autocompleteIndex.suggest("the x", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_WithSharedPrefix_ShouldRankAuthorsFirstAndKeepTopK() {
+        /**
+         * verifying, at most three suggestions are kept per node and authors come before titles
+         */
+        List<Suggestion> suggestions = autocompleteIndex.suggest("t", 10);
+        assertEquals(3, suggestions.size());
+        assertEquals(List.of("Thorne", "Tolkien"), texts(suggestions.subList(0, 2)));
+        assertEquals(AutocompleteIndex.AUTHOR, suggestions.get(0).type());
+        assertEquals(List.of("Émile Zola"), texts(autocompleteIndex.suggest("emi", 10)));
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::text).toList();
+    }
+}
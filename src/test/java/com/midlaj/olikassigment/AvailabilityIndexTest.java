@@ -0,0 +1,124 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.dto.BookAvailability;
+import com.midlaj.olikassigment.index.AvailabilityIndex;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Availability index tests
+ */
+public class AvailabilityIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private AvailabilityIndex availabilityIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        availabilityIndex = new AvailabilityIndex(bookRepository, true);
+    }
+
+    @Test
+    void load_WithDenseAndSparseIds_ShouldAnswerChecksAndCounts() {
+        /**
+         * ten thousand dense ids, every third one rented, plus a few far apart ids
+         */
+        when(bookRepository.streamAvailability()).thenReturn(LongStream.concat(
+                LongStream.rangeClosed(1, 10_000), LongStream.of(1L << 20, 1L << 40))
+                .mapToObj(id -> new BookAvailability(id, id % 3 != 0)));
+        availabilityIndex.load();
+
+        /**
+         * verifying
+         */
+        assertTrue(availabilityIndex.isReady());
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(availabilityIndex.exists(id));
+            assertEquals(id % 3 != 0, availabilityIndex.isAvailable(id));
+        }
+        assertTrue(availabilityIndex.isAvailable(1L << 40));
+        assertFalse(availabilityIndex.exists(10_001L));
+        assertEquals(6_669, availabilityIndex.countAvailable());
+        assertEquals(3_333, availabilityIndex.countRented());
+    }
+
+    @Test
+    void findIds_ShouldPageInIdOrder() {
+        /**
+         * books 1 to 10, the even ones rented
+         */
+        when(bookRepository.streamAvailability()).thenReturn(LongStream.rangeClosed(1, 10)
+                .mapToObj(id -> new BookAvailability(id, id % 2 == 1)));
+        availabilityIndex.load();
+
+        /**
+         * verifying
+         */
+        assertEquals(List.of(1L, 3L, 5L), availabilityIndex.findAvailableIds(0, 3));
+        assertEquals(List.of(7L, 9L), availabilityIndex.findAvailableIds(5, 3));
+        assertEquals(List.of(6L, 8L, 10L), availabilityIndex.findRentedIds(4, 10));
+        assertEquals(List.of(), availabilityIndex.findRentedIds(10, 10));
+    }
+
+    @Test
+    void onRentedAndReturned_ShouldMoveBooksBetweenAvailableAndRented() {
+        /**
+         * five thousand available books in one container, then renting all but a thousand of them
+         */
+        when(bookRepository.streamAvailability()).thenReturn(LongStream.rangeClosed(1, 5_000)
+                .mapToObj(id -> new BookAvailability(id, true)));
+        availabilityIndex.load();
+        for (long id = 1_001; id <= 5_000; id++) {
+            availabilityIndex.onRented(id);
+        }
+
+        /**
+         * verifying, returning a deleted book does not bring it back
+         */
+        assertEquals(1_000, availabilityIndex.countAvailable());
+        assertEquals(4_000, availabilityIndex.countRented());
+        assertEquals(List.of(1_000L, 1_001L), List.of(
+                availabilityIndex.findAvailableIds(999, 1).get(0), availabilityIndex.findRentedIds(999, 1).get(0)));
+
+        availabilityIndex.onReturned(4_000L);
+        availabilityIndex.onBookDeleted(5_000L);
+        availabilityIndex.onReturned(5_000L);
+        assertTrue(availabilityIndex.isAvailable(4_000L));
+        assertFalse(availabilityIndex.exists(5_000L));
+        assertFalse(availabilityIndex.isAvailable(5_000L));
+        assertEquals(1_001, availabilityIndex.countAvailable());
+        assertEquals(3_998, availabilityIndex.countRented());
+    }
+
+    @Test
+    void findRentedIds_WithFewRentedAmongManyBooks_ShouldPageTheRentedBooks() {
+        /**
+         * a hundred thousand books, every ten thousandth one rented, then renting a book the index does not know
+         */
+        when(bookRepository.streamAvailability()).thenReturn(LongStream.rangeClosed(1, 100_000)
+                .mapToObj(id -> new BookAvailability(id, id % 10_000 != 0)));
+        availabilityIndex.load();
+        availabilityIndex.onRented(200_000L);
+
+        /**
+         * verifying
+         */
+        assertEquals(List.of(10_000L, 20_000L, 30_000L), availabilityIndex.findRentedIds(0, 3));
+        assertEquals(List.of(40_000L, 50_000L, 60_000L, 70_000L, 80_000L, 90_000L, 100_000L),
+                availabilityIndex.findRentedIds(30_000, 10));
+        assertEquals(10, availabilityIndex.countRented());
+        assertFalse(availabilityIndex.exists(200_000L));
+    }
+}
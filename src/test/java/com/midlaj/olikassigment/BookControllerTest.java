@@ -1,10 +1,20 @@
 package com.midlaj.olikassigment;
 
+import com.midlaj.olikassigment.dto.AvailabilityCounts;
+import com.midlaj.olikassigment.dto.BookAvailability;
+import com.midlaj.olikassigment.dto.BookImportReport;
 import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.dto.ErrorResponse;
+import com.midlaj.olikassigment.dto.RentalRequest;
+import com.midlaj.olikassigment.dto.SqlStatsReport;
+import com.midlaj.olikassigment.dto.Suggestion;
+import com.midlaj.olikassigment.index.AutocompleteIndex;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.model.Book;
 import com.midlaj.olikassigment.repository.AuthorRepository;
 import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.util.CursorUtils;
 import com.midlaj.olikassigment.util.Utils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,9 +23,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -23,6 +37,8 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Integration Testing of Book Controller
@@ -43,6 +59,12 @@ public class BookControllerTest {
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AutocompleteIndex autocompleteIndex;
+
     private String getBaseUrl() {
         return "http://localhost:" + port + "/api/book";
     }
@@ -122,6 +144,131 @@ public class BookControllerTest {
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
     }
 
+    /**
+     * Testing search by title and author name, api "api/book/search"
+     */
+    @Test
+    public void testSearchBooksByTitleAndAuthor() {
+
+        /**
+         * creating a book with a title word no other book has
+         */
+        String word = "zq" + UUID.randomUUID().toString().replace("-", "");
+        BookRequest bookRequest = new BookRequest("Search " + word + " Title", authorId, Utils.generateRandomIsbn13(), 2020);
+        ResponseEntity<Book> created = restTemplate.postForEntity(getBaseUrl() + "/new", bookRequest, Book.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+
+        /**
+         * searching with an incomplete last word
+         */
+        ResponseEntity<List<BookSummary>> response = restTemplate.exchange(
+                getBaseUrl() + "/search?q=search " + word.substring(0, 12), HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {
+                });
+
+        /**
+         * checking the new book is the best match
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(created.getBody().getId(), response.getBody().get(0).id());
+    }
+
+    /**
+     * Testing type ahead on titles, api "api/book/autocomplete"
+     */
+    @Test
+    public void testAutocompleteSuggestsNewBookAfterRebuild() {
+
+        /**
+         * creating a book with a title no other book has, then rebuilding the trie
+         */
+        String title = "Zq" + UUID.randomUUID().toString().replace("-", "");
+        BookRequest bookRequest = new BookRequest(title, authorId, Utils.generateRandomIsbn13(), 2020);
+        ResponseEntity<Book> created = restTemplate.postForEntity(getBaseUrl() + "/new", bookRequest, Book.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        autocompleteIndex.rebuild();
+
+        /**
+         * typing the start of the title
+         */
+        ResponseEntity<List<Suggestion>> response = restTemplate.exchange(
+                getBaseUrl() + "/autocomplete?prefix=" + title.substring(0, 10).toLowerCase(), HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {
+                });
+
+        /**
+         * checking the new book is suggested
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new Suggestion(title, AutocompleteIndex.BOOK, created.getBody().getId()), response.getBody().get(0));
+    }
+
+    /**
+     * Testing isbn lookup and duplicate isbn check, api "api/book/isbn/{isbn}"
+     */
+    @Test
+    public void testGetBookByIsbnAndRejectDuplicateIsbn() {
+
+        /**
+         * creating a book and reading it back by isbn
+         */
+        String isbn = Utils.generateRandomIsbn13();
+        BookRequest bookRequest = new BookRequest("test_book_" + UUID.randomUUID(), authorId, isbn, 2020);
+        ResponseEntity<Book> created = restTemplate.postForEntity(getBaseUrl() + "/new", bookRequest, Book.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+
+        ResponseEntity<Book> response = restTemplate.getForEntity(getBaseUrl() + "/isbn/" + isbn, Book.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(created.getBody().getId(), response.getBody().getId());
+
+        /**
+         * a second book with the same isbn is rejected
+         */
+        BookRequest duplicate = new BookRequest("test_book_" + UUID.randomUUID(), authorId, isbn, 2020);
+        ResponseEntity<String> conflict = restTemplate.postForEntity(getBaseUrl() + "/new", duplicate, String.class);
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+
+        /**
+         * after deleting the book its isbn is no longer found, reported like every missing entity
+         */
+        restTemplate.delete(getBaseUrl() + "/" + created.getBody().getId());
+        ResponseEntity<ErrorResponse> missing = restTemplate.getForEntity(getBaseUrl() + "/isbn/" + isbn, ErrorResponse.class);
+        assertEquals("Book not found", missing.getBody().message());
+    }
+
+    /**
+     * Testing importing a csv catalogue, api "api/book/import"
+     */
+    @Test
+    public void testImportBooksCsv() {
+
+        /**
+         * creating an upload with two new books and one book using an existing isbn
+         */
+        Book existing = bookRepository.findById(bookId).orElseThrow();
+        String csv = "title,authorId,isbn,publicationYear\n"
+                + "test_book_" + UUID.randomUUID() + "," + authorId + "," + Utils.generateRandomIsbn13() + ",2020\n"
+                + "test_book_" + UUID.randomUUID() + "," + authorId + "," + Utils.generateRandomIsbn13() + ",2021\n"
+                + "test_book_" + UUID.randomUUID() + "," + authorId + "," + existing.getIsbn() + ",2022\n";
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+
+        /**
+         * performing a POST request
+         */
+        ResponseEntity<BookImportReport> response = restTemplate.postForEntity(
+                getBaseUrl() + "/import", new HttpEntity<>(csv, headers), BookImportReport.class);
+
+        /**
+         * checking if status is OK and only the duplicate row was rejected
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(2, response.getBody().importedRows());
+        assertEquals(1, response.getBody().failedRows());
+        assertEquals(4L, response.getBody().errors().get(0).line());
+    }
+
     /**
      * Testing retrieving a book with id, api "api/book/{id}"
      */
@@ -153,7 +300,7 @@ public class BookControllerTest {
         /**
          * performing GET request
          */
-        ResponseEntity<List<Book>> response = restTemplate.exchange(
+        ResponseEntity<List<BookSummary>> response = restTemplate.exchange(
                 getBaseUrl(),
                 HttpMethod.GET,
                 null,
@@ -167,6 +314,102 @@ public class BookControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
+    /**
+     * Testing getting the books of an author, api "api/book/author/{authorId}"
+     */
+    @Test
+    public void testGetBooksByAuthorReturnsAuthorName() {
+
+        /**
+         * performing GET request
+         */
+        ResponseEntity<List<BookSummary>> response = restTemplate.exchange(
+                getBaseUrl() + "/author/" + authorId,
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<>() {
+                }
+        );
+
+        /**
+         * checking the book of the test data is listed with the id and name of its author
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().size());
+        BookSummary book = response.getBody().get(0);
+        assertEquals(bookId, book.id());
+        assertEquals(authorId, book.authorId());
+        assertTrue(book.authorName().startsWith("Test_Author_1"));
+        assertNull(response.getHeaders().getFirst(CursorUtils.NEXT_CURSOR_HEADER));
+
+        /**
+         * an author without books gets an empty page, a missing author is reported like every missing entity
+         */
+        Author other = authorRepository.save(Author.builder()
+                .name("Test_Author_2" + UUID.randomUUID())
+                .biography("Test_Biography_2_Lorem Ipsum Test Value, 64 characters required to pass validation")
+                .build());
+        ResponseEntity<List<BookSummary>> empty = restTemplate.exchange(
+                getBaseUrl() + "/author/" + other.getId(), HttpMethod.GET, null,
+                new ParameterizedTypeReference<>() {
+                });
+        assertEquals(HttpStatus.OK, empty.getStatusCode());
+        assertTrue(empty.getBody().isEmpty());
+
+        ResponseEntity<ErrorResponse> missing = restTemplate.getForEntity(getBaseUrl() + "/author/" + Long.MAX_VALUE, ErrorResponse.class);
+        assertEquals("Author not found", missing.getBody().message());
+    }
+
+    /**
+     * Testing getting books page by page, api "api/book?limit=1"
+     */
+    @Test
+    public void testGetBooksWithLimitReturnsNextCursor() {
+
+        /**
+         * creating one more book so that at least two pages exist
+         */
+        BookRequest bookRequest = new BookRequest("test_book_" + UUID.randomUUID(), authorId, Utils.generateRandomIsbn13(), 2020);
+        restTemplate.postForEntity(getBaseUrl() + "/new", bookRequest, Book.class);
+
+        /**
+         * performing GET request for the first page
+         */
+        ResponseEntity<List<BookSummary>> response = restTemplate.exchange(
+                getBaseUrl() + "?limit=1",
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<>() {
+                }
+        );
+
+        /**
+         * checking if status is OK, page size is respected and a cursor is returned
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().size());
+        assertNotNull(response.getHeaders().getFirst(CursorUtils.NEXT_CURSOR_HEADER));
+    }
+
+    /**
+     * Testing exporting the catalogue as newline delimited json, api "api/book/export"
+     */
+    @Test
+    public void testExportBooksAsNdjson() {
+
+        /**
+         * performing GET request
+         */
+        ResponseEntity<String> response = restTemplate.getForEntity(getBaseUrl() + "/export", String.class);
+
+        /**
+         * checking if status is OK, the content type is ndjson and the test book is one of the lines
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertTrue(response.getBody().lines().anyMatch(line -> line.contains("\"id\":" + bookId + ",")));
+    }
+
     /**
      * Testing deleting a book by id, api DELETE "api/book"
      */
@@ -200,7 +443,7 @@ public class BookControllerTest {
         /**
          * performing GET request
          */
-        ResponseEntity<List<Book>> response = restTemplate.exchange(
+        ResponseEntity<List<BookSummary>> response = restTemplate.exchange(
                 getBaseUrl() + "/available",
                 HttpMethod.GET,
                 null,
@@ -223,7 +466,7 @@ public class BookControllerTest {
         /**
          * performing GET request
          */
-        ResponseEntity<List<Book>> response = restTemplate.exchange(
+        ResponseEntity<List<BookSummary>> response = restTemplate.exchange(
                 getBaseUrl() + "/rented",
                 HttpMethod.GET,
                 null,
@@ -237,5 +480,156 @@ public class BookControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
+    /**
+     * Testing availability check and counts, api "api/book/{id}/availability" and "api/book/availability"
+     */
+    @Test
+    public void testGetBookAvailabilityAndCounts() {
+
+        /**
+         * a new book is available
+         */
+        BookRequest bookRequest = new BookRequest("test_book_" + UUID.randomUUID(), authorId, Utils.generateRandomIsbn13(), 2020);
+        ResponseEntity<Book> created = restTemplate.postForEntity(getBaseUrl() + "/new", bookRequest, Book.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+
+        ResponseEntity<BookAvailability> response = restTemplate.getForEntity(
+                getBaseUrl() + "/" + created.getBody().getId() + "/availability", BookAvailability.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new BookAvailability(created.getBody().getId(), true), response.getBody());
+
+        /**
+         * counting books by availability
+         */
+        ResponseEntity<AvailabilityCounts> counts = restTemplate.getForEntity(getBaseUrl() + "/availability", AvailabilityCounts.class);
+        assertEquals(HttpStatus.OK, counts.getStatusCode());
+        assertTrue(counts.getBody().available() >= 1);
+    }
+
+    /**
+     * Testing conditional requests of a book, api "api/book/{id}"
+     */
+    @Test
+    public void testGetBookByIdConditionally() {
+
+        /**
+         * first request, the book is sent with its validators
+         */
+        ResponseEntity<Book> response = restTemplate.getForEntity(getBaseUrl() + "/" + bookId, Book.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+        assertEquals("max-age=0, must-revalidate", response.getHeaders().getCacheControl());
+
+        /**
+         * revalidating with the ETag or the Last-Modified, the book is unchanged
+         */
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.setIfNoneMatch(eTag);
+        ResponseEntity<Book> notModified = restTemplate.exchange(getBaseUrl() + "/" + bookId, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch), Book.class);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+
+        HttpHeaders ifModifiedSince = new HttpHeaders();
+        ifModifiedSince.setIfModifiedSince(response.getHeaders().getLastModified());
+        assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange(getBaseUrl() + "/" + bookId, HttpMethod.GET,
+                new HttpEntity<>(ifModifiedSince), Book.class).getStatusCode());
+
+        /**
+         * renting the book out changes it
+         */
+        restTemplate.postForEntity("http://localhost:" + port + "/api/rental/new",
+                new RentalRequest(bookId, "Test_Renter_Name_" + UUID.randomUUID()), Object.class);
+        ResponseEntity<Book> modified = restTemplate.exchange(getBaseUrl() + "/" + bookId, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch), Book.class);
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertEquals(false, modified.getBody().getAvailable());
+        assertTrue(!eTag.equals(modified.getHeaders().getETag()));
+
+        /**
+         * a plain request takes the validators from the cached book, they match the ones read for the conditional request
+         */
+        ResponseEntity<Book> plain = restTemplate.getForEntity(getBaseUrl() + "/" + bookId, Book.class);
+        assertEquals(modified.getHeaders().getETag(), plain.getHeaders().getETag());
+        assertEquals(modified.getHeaders().getLastModified(), plain.getHeaders().getLastModified());
+    }
+
+    /**
+     * Testing a conditional request of a book changed behind the cache, as by another instance, api "api/book/{id}"
+     */
+    @Test
+    public void testGetBookByIdConditionallyWithStaleCache() {
+
+        /**
+         * the book cached, then rented out directly in the database
+         */
+        ResponseEntity<Book> cached = restTemplate.getForEntity(getBaseUrl() + "/" + bookId, Book.class);
+        assertEquals(true, cached.getBody().getAvailable());
+        jdbcTemplate.update("update book set is_available = false, version = version + 1, updated_at = now() where id = ?", bookId);
+
+        /**
+         * revalidating, the book is reloaded and sent under the validators of the body
+         */
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.setIfNoneMatch(cached.getHeaders().getETag());
+        ResponseEntity<Book> modified = restTemplate.exchange(getBaseUrl() + "/" + bookId, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch), Book.class);
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertEquals(false, modified.getBody().getAvailable());
+        assertEquals("\"" + modified.getBody().getVersion() + "." + modified.getBody().getAuthor().getVersion() + "\"",
+                modified.getHeaders().getETag());
+        assertEquals(false, restTemplate.getForEntity(getBaseUrl() + "/" + bookId, Book.class).getBody().getAvailable());
+    }
+
+    /**
+     * Testing conditional requests of a page, api "api/book/author/{authorId}"
+     */
+    @Test
+    public void testGetBooksByAuthorConditionally() {
+
+        /**
+         * first request, then revalidating the unchanged page
+         */
+        ResponseEntity<String> response = restTemplate.getForEntity(getBaseUrl() + "/author/" + authorId, String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getHeaders().getETag().startsWith("W/"));
+
+        HttpHeaders ifNoneMatch = new HttpHeaders();
+        ifNoneMatch.setIfNoneMatch(response.getHeaders().getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, restTemplate.exchange(getBaseUrl() + "/author/" + authorId, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch), String.class).getStatusCode());
+
+        /**
+         * a new book of the author changes the page
+         */
+        BookRequest bookRequest = new BookRequest("test_book_" + UUID.randomUUID(), authorId, Utils.generateRandomIsbn13(), 2020);
+        assertEquals(HttpStatus.CREATED, restTemplate.postForEntity(getBaseUrl() + "/new", bookRequest, Book.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.exchange(getBaseUrl() + "/author/" + authorId, HttpMethod.GET,
+                new HttpEntity<>(ifNoneMatch), String.class).getStatusCode());
+    }
+
+    /**
+     * Testing the sql statistics of a listing, api "actuator/sqlstats"
+     */
+    @Test
+    public void testSqlStatsReport() {
+
+        /**
+         * listing books, then reading the report
+         */
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(getBaseUrl() + "?limit=5", String.class).getStatusCode());
+        ResponseEntity<SqlStatsReport> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/actuator/sqlstats", SqlStatsReport.class);
+
+        /**
+         * checking the configured thresholds are reported, a listing is one query so it is never repeated
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(100, response.getBody().slowQueryThresholdMillis());
+        assertEquals(10, response.getBody().repeatedQueryThreshold());
+        assertTrue(response.getBody().repeatedQueries().stream().noneMatch(query -> query.request().equals("GET /api/book")));
+    }
+
 
 }
@@ -0,0 +1,172 @@
+package com.midlaj.olikassigment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midlaj.olikassigment.dto.BookImportError;
+import com.midlaj.olikassigment.dto.BookImportReport;
+import com.midlaj.olikassigment.model.Author;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.service.BookImportService;
+import com.midlaj.olikassigment.service.BookImportServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Book import service implementation tests
+ */
+@SpringBootTest
+public class BookImportServiceImplTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private BookImportService bookImportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        bookImportService = new BookImportServiceImpl(bookRepository, authorRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(),
+                transactionManager, entityManager, 100) {
+        };
+    }
+
+    @Test
+    void importCsv_WithMixedRows_ShouldInsertValidRowsAndReportErrors() {
+        /**
+         * testing upload, header, two valid rows, a duplicate isbn inside the upload, an existing isbn,
+         * an unknown author and a malformed row
+         */
+        String csv = """
+                title,authorId,isbn,publicationYear
+                "Book, One",1,9780306406157,2001
+                Book Two,1,9781861972712,2002
+                Book Three,1,9780306406157,2003
+                Book Four,1,9780131103627,2004
+                Book Five,2,9780201633610,2005
+                Book Six,abc,9780596009205,2006
+                """;
+
+        /**
+         * mocking dao calls, isbn of book four is already stored and author 2 does not exist
+         */
+        when(bookRepository.findExistingIsbns(anyCollection())).thenReturn(Set.of("9780131103627"));
+        when(bookRepository.findExistingTitles(anyCollection())).thenReturn(Set.of());
+        when(authorRepository.findExistingIds(anyCollection())).thenReturn(Set.of(1L));
+        when(authorRepository.getReferenceById(1L)).thenReturn(Author.builder().id(1L).build());
+
+        /**
+         * calling service method
+         */
+        BookImportReport report = bookImportService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        /**
+         * verifying the counts, the failing lines and that the valid rows were saved as one batch
+         */
+        assertEquals(6, report.totalRows());
+        assertEquals(2, report.importedRows());
+        assertEquals(4, report.failedRows());
+        assertEquals(List.of(4L, 5L, 6L, 7L), report.errors().stream().map(BookImportError::line).sorted().toList());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Book>> saved = ArgumentCaptor.forClass(List.class);
+        verify(bookRepository, times(1)).saveAllAndFlush(saved.capture());
+        assertEquals(List.of("Book, One", "Book Two"), saved.getValue().stream().map(Book::getTitle).toList());
+    }
+
+    @Test
+    void importNdjson_WithMalformedLine_ShouldReportLine() {
+        /**
+         * testing upload with one malformed line
+         */
+        String ndjson = "{\"title\":\"Book\",\"authorId\":1,\"isbn\":\"9780306406157\",\"publicationYear\":2001\n";
+
+        /**
+         * calling service method
+         */
+        BookImportReport report = bookImportService.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        /**
+         * verifying
+         */
+        assertEquals(1, report.failedRows());
+        assertEquals(1L, report.errors().get(0).line());
+        verify(bookRepository, never()).saveAllAndFlush(any());
+    }
+
+    @Test
+    void importCsv_WithConcurrentConflicts_ShouldReportEachRowByViolatedConstraint() {
+        /**
+         * testing upload of three rows passing the checks, meanwhile another writer stored the isbn of the
+         * second row and deleted the author of the third
+         */
+        String csv = """
+                title,authorId,isbn,publicationYear
+                Book One,1,9780306406157,2001
+                Book Two,1,9781861972712,2002
+                Book Three,2,9780131103627,2003
+                """;
+
+        /**
+         * mocking dao calls, the chunk fails and so do the rows of the second and the third book
+         */
+        when(bookRepository.findExistingIsbns(anyCollection())).thenReturn(Set.of());
+        when(bookRepository.findExistingTitles(anyCollection())).thenReturn(Set.of());
+        when(authorRepository.findExistingIds(anyCollection())).thenReturn(Set.of(1L, 2L));
+        when(authorRepository.getReferenceById(anyLong())).thenAnswer(invocation -> Author.builder().id(invocation.getArgument(0)).build());
+        when(bookRepository.saveAllAndFlush(anyIterable())).thenAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            if (books.size() > 1 || books.get(0).getTitle().equals("Book Two")) throw violation(Book.ISBN_CONSTRAINT);
+            if (books.get(0).getTitle().equals("Book Three")) throw violation(Book.AUTHOR_CONSTRAINT);
+            return books;
+        });
+
+        /**
+         * calling service method
+         */
+        BookImportReport report = bookImportService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        /**
+         * verifying, the first book is imported and every failing row names its own reason
+         */
+        assertEquals(1, report.importedRows());
+        assertEquals(List.of("Book with isbn '9781861972712' already exists.", "Author not found"),
+                report.errors().stream().map(BookImportError::message).toList());
+        verify(entityManager, times(1)).clear();
+    }
+
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException("duplicate key"), constraint));
+    }
+}
@@ -0,0 +1,156 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.index.BookSearchIndex;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Book search index tests
+ */
+public class BookSearchIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BookSearchIndex bookSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        bookSearchIndex = new BookSearchIndex(bookRepository, authorRepository, transactionManager, true);
+        when(authorRepository.streamNames()).thenReturn(Stream.empty());
+        when(bookRepository.streamTitles()).thenReturn(Stream.empty());
+        bookSearchIndex.load();
+
+        /**
+         * test catalogue, outside of a transaction changes apply at once
+         */
+        bookSearchIndex.onAuthorCreated(1L, "J. R. R. Tolkien");
+        bookSearchIndex.onAuthorCreated(2L, "Émile Zola");
+        bookSearchIndex.onBookCreated(10L, "The Hobbit", 1L);
+        bookSearchIndex.onBookCreated(11L, "The Lord of the Rings", 1L);
+        bookSearchIndex.onBookCreated(12L, "The Ladies' Paradise", 2L);
+    }
+
+    @Test
+    void search_WithTitleWords_ShouldRankBestMatchFirst() {
+        /**
+         * verifying, only one book holds both words
+         */
+        List<BookSearchIndex.Hit> hits = bookSearchIndex.search("lord rings", 10);
+        assertEquals(11L, hits.get(0).bookId());
+        assertEquals(1, hits.size());
+    }
+
+    @Test
+    void search_WithAuthorNameAndPrefix_ShouldMatchCaseAndAccentFolded() {
+        /**
+         * verifying, author names are searchable and the last word matches as a prefix
+         */
+        assertEquals(List.of(12L), bookSearchIndex.search("EMILE zol", 10).stream().map(BookSearchIndex.Hit::bookId).toList());
+        assertEquals(2, bookSearchIndex.search("tolk", 10).size());
+    }
+
+    @Test
+    void search_AfterBookDeleted_ShouldSkipIt() {
+        /**
+         * deleting a book
+         */
+        bookSearchIndex.onBookDeleted(10L);
+
+        /**
+         * verifying
+         */
+        assertTrue(bookSearchIndex.search("hobbit", 10).isEmpty());
+        assertEquals(List.of(11L), bookSearchIndex.search("tolkien", 10).stream().map(BookSearchIndex.Hit::bookId).toList());
+    }
+
+    @Test
+    void search_AfterBooksDeleted_ShouldWeighTermsByLiveBooksOnly() {
+        /**
+         * twenty other books, one book of each term and two more books of the first term, deleted again.
+         * Two deletes of twenty four books leave the postings as they are
+         */
+        for (long id = 100; id < 120; id++) {
+            bookSearchIndex.onBookCreated(id, "Delta", 3L);
+        }
+        bookSearchIndex.onBookCreated(200L, "Alpha", 3L);
+        bookSearchIndex.onBookCreated(201L, "Beta", 3L);
+        bookSearchIndex.onBookCreated(202L, "Alpha", 3L);
+        bookSearchIndex.onBookCreated(203L, "Alpha", 3L);
+        bookSearchIndex.onBookDeleted(202L);
+        bookSearchIndex.onBookDeleted(203L);
+
+        /**
+         * verifying, both terms are held by one live book and weigh the same
+         */
+        List<BookSearchIndex.Hit> alpha = bookSearchIndex.search("alpha", 10);
+        List<BookSearchIndex.Hit> beta = bookSearchIndex.search("beta", 10);
+        assertEquals(List.of(200L), alpha.stream().map(BookSearchIndex.Hit::bookId).toList());
+        assertEquals(beta.get(0).score(), alpha.get(0).score(), 1e-6);
+    }
+
+    @Test
+    void search_AfterCompaction_ShouldKeepTheLiveBooks() {
+        /**
+         * a hundred books, then deleting every book but the multiples of five, compacting several times
+         */
+        for (long id = 1000; id < 1100; id++) {
+            bookSearchIndex.onBookCreated(id, "Volume " + id, 2L);
+        }
+        for (long id = 1000; id < 1100; id++) {
+            if (id % 5 != 0) bookSearchIndex.onBookDeleted(id);
+        }
+        bookSearchIndex.onBookDeleted(11L);
+        bookSearchIndex.onBookCreated(2000L, "The Silmarillion", 1L);
+
+        /**
+         * verifying, deleted titles are gone, their prefix matches too, and later books are found
+         */
+        assertEquals(List.of(1005L), bookSearchIndex.search("volume 1005", 1).stream().map(BookSearchIndex.Hit::bookId).toList());
+        assertTrue(bookSearchIndex.search("1001", 10).isEmpty());
+        assertEquals(List.of(1010L, 1015L), bookSearchIndex.search("101", 10).stream()
+                .map(BookSearchIndex.Hit::bookId).sorted().toList());
+        assertEquals(List.of(10L, 2000L), bookSearchIndex.search("tolkien", 10).stream()
+                .map(BookSearchIndex.Hit::bookId).sorted().toList());
+        assertEquals(21, bookSearchIndex.search("volume", 100).size() + bookSearchIndex.search("silmarillion", 100).size());
+    }
+
+    @Test
+    void onBookCreated_WithAuthorNotKnown_ShouldReadTheAuthorName() {
+        /**
+         * an author written through another instance
+         */
+        when(authorRepository.findNameById(3L)).thenReturn(Optional.of("Ursula K. Le Guin"));
+        bookSearchIndex.onBookCreated(13L, "A Wizard of Earthsea", 3L);
+        bookSearchIndex.onBookCreated(14L, "The Dispossessed", 3L);
+
+        /**
+         * verifying, the name is read once and the books are found by it
+         */
+        assertEquals(List.of(13L, 14L), bookSearchIndex.search("guin", 10).stream()
+                .map(BookSearchIndex.Hit::bookId).sorted().toList());
+        verify(authorRepository, times(1)).findNameById(3L);
+    }
+}
@@ -1,20 +1,37 @@
 package com.midlaj.olikassigment;
 
+import com.midlaj.olikassigment.dto.AvailabilityCounts;
+import com.midlaj.olikassigment.dto.BookAvailability;
+import com.midlaj.olikassigment.dto.BookCreationCheck;
 import com.midlaj.olikassigment.dto.BookRequest;
+import com.midlaj.olikassigment.dto.BookSummary;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.EntityVersion;
+import com.midlaj.olikassigment.exception.AlreadyRentedException;
 import com.midlaj.olikassigment.exception.DuplicateEntityException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.index.AutocompleteIndex;
+import com.midlaj.olikassigment.index.AvailabilityIndex;
+import com.midlaj.olikassigment.index.BookSearchIndex;
+import com.midlaj.olikassigment.index.IsbnIndex;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.model.Book;
 import com.midlaj.olikassigment.repository.BookRepository;
 import com.midlaj.olikassigment.service.AuthorService;
 import com.midlaj.olikassigment.service.BookService;
 import com.midlaj.olikassigment.service.BookServiceImpl;
+import com.midlaj.olikassigment.util.CursorUtils;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 
+import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -35,13 +52,26 @@ public class BookServiceImplTest {
     @Mock
     private AuthorService authorService;
 
+    @Mock
+    private IsbnIndex isbnIndex;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private AutocompleteIndex autocompleteIndex;
+
+    @Mock
+    private AvailabilityIndex availabilityIndex;
+
     private BookService bookService;
 
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        bookService = new BookServiceImpl(bookRepository, authorService) {
+        bookService = new BookServiceImpl(bookRepository, authorService, isbnIndex, bookSearchIndex, autocompleteIndex,
+                availabilityIndex) {
         };
     }
 
@@ -57,10 +87,10 @@ public class BookServiceImplTest {
         /**
          * mocking dao calls and author service call
          */
-        when(bookRepository.findBookByTitle(bookRequest.title())).thenReturn(Optional.empty());
-        when(bookRepository.findBookByIsbn(bookRequest.isbn())).thenReturn(Optional.empty());
-        when(authorService.checkAuthorById(bookRequest.authorId())).thenReturn(true);
-        when(bookRepository.save(any(Book.class))).thenReturn(new Book());
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(true, false, false));
+        when(authorService.getAuthorById(bookRequest.authorId())).thenReturn(author);
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(new Book());
 
         /**
          * calling service method
@@ -68,9 +98,71 @@ public class BookServiceImplTest {
         Book result = bookService.createNewBook(bookRequest);
 
         /**
-         * verifying
+         * verifying that the book is saved with the loaded author, not with a proxy left for serialization
          */
         assertNotNull(result);
+        verify(bookRepository).saveAndFlush(argThat(book -> book.getAuthor() == author));
+        verify(authorService, never()).getAuthorReference(any());
+    }
+
+    @Test
+    void createNewBook_WithConcurrentDuplicateIsbn_ShouldThrowDuplicateEntityException() {
+        /**
+         * testing object
+         */
+        BookRequest bookRequest = new BookRequest("Test Book", 1L, "ISBN", 2022);
+
+        /**
+         * mocking dao calls, the checks pass but the unique isbn index rejects the insert
+         */
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(true, false, false));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenThrow(violation(Book.ISBN_CONSTRAINT));
+
+        /**
+         * verifying
+         */
+        assertThrows(DuplicateEntityException.class, () -> bookService.createNewBook(bookRequest));
+    }
+
+    @Test
+    void createNewBook_WithConcurrentlyDeletedAuthor_ShouldThrowEntityNotFoundException() {
+        /**
+         * testing object
+         */
+        BookRequest bookRequest = new BookRequest("Test Book", 1L, "ISBN", 2022);
+
+        /**
+         * mocking dao calls, the checks pass but the author foreign key rejects the insert
+         */
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(true, false, false));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenThrow(violation(Book.AUTHOR_CONSTRAINT));
+
+        /**
+         * verifying
+         */
+        assertThrows(EntityNotFoundException.class, () -> bookService.createNewBook(bookRequest));
+    }
+
+    @Test
+    void createNewBook_WithOtherConstraintViolation_ShouldRethrow() {
+        /**
+         * testing object
+         */
+        BookRequest bookRequest = new BookRequest("Test Book", 1L, "ISBN", 2022);
+
+        /**
+         * mocking dao calls, a violation unrelated to the isbn or the author
+         */
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(true, false, false));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenThrow(new DataIntegrityViolationException("value too long"));
+
+        /**
+         * verifying
+         */
+        assertThrows(DataIntegrityViolationException.class, () -> bookService.createNewBook(bookRequest));
     }
 
     @Test
@@ -83,7 +175,8 @@ public class BookServiceImplTest {
         /**
          * mocking dao call
          */
-        when(bookRepository.findBookByTitle(bookRequest.title())).thenReturn(Optional.of(new Book()));
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(true, true, false));
 
         /**
          * verify
@@ -101,8 +194,8 @@ public class BookServiceImplTest {
         /**
          * mocking dao calls
          */
-        when(bookRepository.findBookByTitle("Title")).thenReturn(Optional.empty());
-        when(bookRepository.findBookByIsbn("ISBN")).thenReturn(Optional.of(new Book()));
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(true, false, true));
 
         /**
          * verifying
@@ -118,9 +211,10 @@ public class BookServiceImplTest {
         BookRequest bookRequest = new BookRequest("Test Book", 1L, "ISBN", 2022);
 
         /**
-         * mock author service call
+         * mock dao call
          */
-        when(authorService.checkAuthorById(bookRequest.authorId())).thenReturn(false);
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), true))
+                .thenReturn(creationCheck(false, false, false));
 
         /**
          * verifying
@@ -128,6 +222,148 @@ public class BookServiceImplTest {
         assertThrows(EntityNotFoundException.class, () -> bookService.createNewBook(bookRequest));
     }
 
+    @Test
+    void createNewBook_WithIsbnKnownToIndex_ShouldThrowWithoutQuery() {
+        /**
+         * testing object
+         */
+        BookRequest bookRequest = new BookRequest("Test Book", 1L, "9781234567897", 2022);
+
+        /**
+         * mocking index call, the isbn belongs to book 5
+         */
+        when(isbnIndex.lookup(bookRequest.isbn())).thenReturn(5L);
+
+        /**
+         * verifying
+         */
+        assertThrows(DuplicateEntityException.class, () -> bookService.createNewBook(bookRequest));
+        verify(bookRepository, never()).checkNewBook(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void createNewBook_WithIsbnMissingFromIndex_ShouldSkipIsbnLookup() {
+        /**
+         * testing object
+         */
+        BookRequest bookRequest = new BookRequest("Test Book", 1L, "9781234567897", 2022);
+
+        /**
+         * mocking index and dao calls
+         */
+        when(isbnIndex.lookup(bookRequest.isbn())).thenReturn(IsbnIndex.MISSING);
+        when(bookRepository.checkNewBook(bookRequest.authorId(), bookRequest.title(), bookRequest.isbn(), false))
+                .thenReturn(creationCheck(true, false, false));
+        when(bookRepository.saveAndFlush(any(Book.class))).thenReturn(new Book());
+
+        /**
+         * calling service method
+         */
+        Book result = bookService.createNewBook(bookRequest);
+
+        /**
+         * verifying
+         */
+        assertNotNull(result);
+    }
+
+    @Test
+    void getBookIdByIsbn_WithIsbnMissingFromIndex_ShouldThrowWithoutQuery() {
+        /**
+         * mocking index call
+         */
+        when(isbnIndex.lookup("9781234567897")).thenReturn(IsbnIndex.MISSING);
+
+        /**
+         * verifying
+         */
+        assertThrows(EntityNotFoundException.class, () -> bookService.getBookIdByIsbn("9781234567897"));
+        verify(bookRepository, never()).findIdByIsbn(any());
+    }
+
+    @Test
+    void getBookIdByIsbn_WithIsbnUnknownToIndex_ShouldQueryDatabase() {
+        /**
+         * mocking index and dao calls, the index can not answer hyphenated isbns
+         */
+        when(isbnIndex.lookup("978-1-234-56789-7")).thenReturn(IsbnIndex.UNKNOWN);
+        when(bookRepository.findIdByIsbn("978-1-234-56789-7")).thenReturn(Optional.of(3L));
+
+        /**
+         * verifying
+         */
+        assertEquals(3L, bookService.getBookIdByIsbn("978-1-234-56789-7"));
+    }
+
+    @Test
+    void searchBooks_WithLoadedIndex_ShouldReturnBooksInRankOrder() {
+        /**
+         * testing objects
+         */
+        BookSummary first = summary(7L, true);
+        BookSummary second = summary(3L, true);
+
+        /**
+         * mocking index and dao calls, the books are read in another order than ranked
+         */
+        when(bookSearchIndex.isReady()).thenReturn(true);
+        when(bookSearchIndex.search("hobbit", 20))
+                .thenReturn(List.of(new BookSearchIndex.Hit(7L, 2.5f), new BookSearchIndex.Hit(3L, 1.1f)));
+        when(bookRepository.findSummariesByIdIn(List.of(7L, 3L))).thenReturn(List.of(second, first));
+
+        /**
+         * calling service method
+         */
+        List<BookSummary> result = bookService.searchBooks("hobbit", null);
+
+        /**
+         * verifying
+         */
+        assertEquals(List.of(first, second), result);
+    }
+
+    @Test
+    void searchBooks_WithoutLoadedIndex_ShouldScanTitles() {
+        /**
+         * mocking dao call
+         */
+        List<BookSummary> books = List.of(summary(1L, true));
+        when(bookRepository.findSummariesByTitleContaining("hobbit", Limit.of(100))).thenReturn(books);
+
+        /**
+         * verifying, the limit is capped
+         */
+        assertEquals(books, bookService.searchBooks(" hobbit ", 1000));
+    }
+
+    private static BookSummary summary(Long id, boolean available) {
+        return new BookSummary(id, "Book " + id, "ISBN" + id, 2020, available, 1L, "Author", 0L);
+    }
+
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("violation", new SQLException("violation"), constraint));
+    }
+
+    private static BookCreationCheck creationCheck(boolean authorExists, boolean titleTaken, boolean isbnTaken) {
+        return new BookCreationCheck() {
+            @Override
+            public Boolean getAuthorExists() {
+                return authorExists;
+            }
+
+            @Override
+            public Boolean getTitleTaken() {
+                return titleTaken;
+            }
+
+            @Override
+            public Boolean getIsbnTaken() {
+                return isbnTaken;
+            }
+        };
+    }
+
     @Test
     void getBookById_WithValidId_ShouldReturnBook() {
         /**
@@ -170,28 +406,53 @@ public class BookServiceImplTest {
         assertThrows(EntityNotFoundException.class, () -> bookService.getBookById(id));
     }
 
+    @Test
+    void getBookVersion_ShouldCombineBookAndAuthorVersions() {
+        /**
+         * a book changed after its author
+         */
+        Long id = 1L;
+        Instant authorUpdatedAt = Instant.parse("2024-01-01T00:00:00Z");
+        Instant bookUpdatedAt = Instant.parse("2024-02-01T00:00:00Z");
+
+        /**
+         * mocking dao call
+         */
+        when(bookRepository.findVersionById(id)).thenReturn(Optional.of(new EntityVersion(3L, bookUpdatedAt, 1L, authorUpdatedAt)));
+
+        /**
+         * verifying, the book is not loaded
+         */
+        assertEquals(new EntityVersion("3.1", bookUpdatedAt), bookService.getBookVersion(id));
+        verify(bookRepository, never()).findById(id);
+
+        when(bookRepository.findVersionById(2L)).thenReturn(Optional.empty());
+        assertThrows(EntityNotFoundException.class, () -> bookService.getBookVersion(2L));
+    }
+
     @Test
     void getBooks_ShouldReturnListOfBooks() {
         /**
          * testing objects
          */
-        List<Book> books = new ArrayList<>();
-        books.add(new Book());
+        List<BookSummary> books = new ArrayList<>();
+        books.add(summary(1L, true));
 
         /**
          * mock dao call
          */
-        when(bookRepository.findAll()).thenReturn(books);
+        when(bookRepository.findSummariesAfter(eq(0L), any(Limit.class))).thenReturn(books);
 
         /**
          * calling service method
          */
-        List<Book> result = bookService.getBooks();
+        CursorPage<BookSummary> result = bookService.getBooks(null, null);
 
         /**
          * verifying
          */
-        assertEquals(books, result);
+        assertEquals(books, result.items());
+        assertNull(result.nextCursor());
     }
 
     @Test
@@ -259,29 +520,79 @@ public class BookServiceImplTest {
         assertEquals(book, result);
     }
 
+    @Test
+    void saveBooks_ShouldSaveAllInOneCall() {
+        /**
+         * testing objects
+         */
+        List<Book> books = List.of(new Book(), new Book());
+
+        /**
+         * mocking dao call
+         */
+        when(bookRepository.saveAll(books)).thenReturn(books);
+
+        /**
+         * calling service method
+         */
+        List<Book> result = bookService.saveBooks(books);
+
+        /**
+         * verifying
+         */
+        assertEquals(books, result);
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+
     @Test
     void findBooksByAuthor_WithValidAuthorId_ShouldReturnListOfBooks() {
         /**
          * testing id and objects
          */
         Long authorId = 1L;
-        List<Book> books = new ArrayList<>();
+        List<BookSummary> books = List.of(summary(4L, true), summary(6L, false), summary(9L, true));
+
+        /**
+         * mocking dao call, one row more than the page size
+         */
+        when(bookRepository.findSummariesByAuthorAfter(authorId, 0L, Limit.of(3))).thenReturn(books);
+
+        /**
+         * calling service method
+         */
+        CursorPage<BookSummary> result = bookService.findBooksByAuthor(authorId, null, 2);
+
+        /**
+         * verifying, the existence of the author is not checked separately
+         */
+        assertEquals(books.subList(0, 2), result.items());
+        assertEquals(CursorUtils.encode(6L), result.nextCursor());
+        verify(authorService, never()).checkAuthorById(any());
+    }
+
+    @Test
+    void findBooksByAuthor_WithAuthorWithoutBooks_ShouldReturnEmptyPage() {
+        /**
+         * testing id
+         */
+        Long authorId = 1L;
 
         /**
-         * mocking dao call and author service call
+         * mocking dao call, the author row comes back without book
          */
-        when(authorService.checkAuthorById(authorId)).thenReturn(true);
-        when(bookRepository.findBooksByAuthorId(authorId)).thenReturn(books);
+        when(bookRepository.findSummariesByAuthorAfter(authorId, 0L, Limit.of(51)))
+                .thenReturn(List.of(new BookSummary(null, null, null, null, null, authorId, "Author", null)));
 
         /**
          * calling service method
          */
-        List<Book> result = bookService.findBooksByAuthor(authorId);
+        CursorPage<BookSummary> result = bookService.findBooksByAuthor(authorId, null, null);
 
         /**
          * verifying
          */
-        assertEquals(books, result);
+        assertTrue(result.items().isEmpty());
+        assertNull(result.nextCursor());
     }
 
     @Test
@@ -292,14 +603,117 @@ public class BookServiceImplTest {
         Long authorId = 1L;
 
         /**
-         * mocking dao call
+         * mocking dao call, no row when the author does not exist
+         */
+        when(bookRepository.findSummariesByAuthorAfter(authorId, 0L, Limit.of(51))).thenReturn(List.of());
+
+        /**
+         * verifying
+         */
+        assertThrows(EntityNotFoundException.class, () -> bookService.findBooksByAuthor(authorId, null, null));
+    }
+
+    @Test
+    void checkoutBook_WithAvailableBook_ShouldMarkBookRented() {
+        /**
+         * testing id
+         */
+        Long id = 1L;
+
+        /**
+         * mocking dao call, one row updated
+         */
+        when(bookRepository.markRentedIfAvailable(id)).thenReturn(1);
+
+        /**
+         * calling service method
+         */
+        bookService.checkoutBook(id);
+
+        /**
+         * verifying that no extra lookup is made
+         */
+        verify(bookRepository, never()).existsById(id);
+    }
+
+    @Test
+    void checkoutBook_WithRentedBook_ShouldThrowAlreadyRentedException() {
+        /**
+         * testing id
+         */
+        Long id = 1L;
+
+        /**
+         * mocking dao calls, no row updated but the book exists
+         */
+        when(bookRepository.markRentedIfAvailable(id)).thenReturn(0);
+        when(bookRepository.existsById(id)).thenReturn(true);
+
+        /**
+         * verifying
+         */
+        assertThrows(AlreadyRentedException.class, () -> bookService.checkoutBook(id));
+    }
+
+    @Test
+    void checkoutBook_WithInvalidId_ShouldThrowEntityNotFoundException() {
+        /**
+         * testing id
+         */
+        Long id = 1L;
+
+        /**
+         * mocking dao calls, no row updated and the book does not exist
+         */
+        when(bookRepository.markRentedIfAvailable(id)).thenReturn(0);
+        when(bookRepository.existsById(id)).thenReturn(false);
+
+        /**
+         * verifying
+         */
+        assertThrows(EntityNotFoundException.class, () -> bookService.checkoutBook(id));
+    }
+
+    @Test
+    void checkinBook_WithRentedBook_ShouldMarkBookAvailable() {
+        /**
+         * testing id
+         */
+        Long id = 1L;
+
+        /**
+         * mocking dao call, one row updated
+         */
+        when(bookRepository.markAvailableIfRented(id)).thenReturn(1);
+
+        /**
+         * calling service method
+         */
+        bookService.checkinBook(id);
+
+        /**
+         * verifying that no extra lookup is made
+         */
+        verify(bookRepository, never()).existsById(id);
+    }
+
+    @Test
+    void checkinBook_WithInvalidId_ShouldThrowEntityNotFoundException() {
+        /**
+         * testing id
          */
-        when(authorService.checkAuthorById(authorId)).thenReturn(false);
+        Long id = 1L;
+
+        /**
+         * mocking dao calls, no row updated and the book does not exist
+         */
+        when(bookRepository.markAvailableIfRented(id)).thenReturn(0);
+        when(bookRepository.existsById(id)).thenReturn(false);
 
         /**
          * verifying
          */
-        assertThrows(EntityNotFoundException.class, () -> bookService.findBooksByAuthor(authorId));
+        assertThrows(EntityNotFoundException.class, () -> bookService.checkinBook(id));
     }
 
     @Test
@@ -307,22 +721,52 @@ public class BookServiceImplTest {
         /**
          * testing object
          */
-        List<Book> books = new ArrayList<>();
+        List<BookSummary> books = new ArrayList<>();
 
         /**
          * mocking dao call
          */
-        when(bookRepository.findBooksByAvailableTrue()).thenReturn(books);
+        when(bookRepository.findSummariesByAvailableAfter(true, 0L, Limit.of(51))).thenReturn(books);
 
         /**
          * calling service method
          */
-        List<Book> result = bookService.findAvailableBooksForRent();
+        CursorPage<BookSummary> result = bookService.findAvailableBooksForRent(null, null);
 
         /**
          * verifying
          */
-        assertEquals(books, result);
+        assertEquals(books, result.items());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void findAvailableBooksForRent_WithIndexReady_ShouldLoadIndexedIdsInOrder() {
+        /**
+         * testing objects, book 7 was rented through another instance after the index saw it
+         */
+        BookSummary first = summary(3L, true);
+        BookSummary stale = summary(7L, false);
+        BookSummary last = summary(9L, true);
+
+        /**
+         * mocking index and dao calls
+         */
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.findAvailableIds(0L, 4)).thenReturn(List.of(3L, 7L, 9L, 12L));
+        when(bookRepository.findSummariesByIdIn(List.of(3L, 7L, 9L))).thenReturn(List.of(last, stale, first));
+
+        /**
+         * calling service method
+         */
+        CursorPage<BookSummary> result = bookService.findAvailableBooksForRent(null, 3);
+
+        /**
+         * verifying
+         */
+        assertEquals(List.of(first, last), result.items());
+        assertEquals(CursorUtils.encode(9L), result.nextCursor());
+        verify(bookRepository, never()).findSummariesByAvailableAfter(anyBoolean(), any(), any());
     }
 
     @Test
@@ -330,21 +774,71 @@ public class BookServiceImplTest {
         /**
          * testing object
          */
-        List<Book> books = new ArrayList<>();
+        List<BookSummary> books = new ArrayList<>();
 
         /**
          * mocking dao call
          */
-        when(bookRepository.findBooksByAvailableFalse()).thenReturn(books);
+        when(bookRepository.findSummariesByAvailableAfter(false, 0L, Limit.of(51))).thenReturn(books);
 
         /**
          * calling service method
          */
-        List<Book> result = bookService.findRentedBooks();
+        CursorPage<BookSummary> result = bookService.findRentedBooks(null, null);
 
         /**
          * verifying
          */
-        assertEquals(books, result);
+        assertEquals(books, result.items());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void getBookAvailability_WithIndexReady_ShouldNotQuery() {
+        /**
+         * mocking index calls
+         */
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.exists(5L)).thenReturn(true);
+        when(availabilityIndex.isAvailable(5L)).thenReturn(false);
+
+        /**
+         * calling service method
+         */
+        BookAvailability result = bookService.getBookAvailability(5L);
+
+        /**
+         * verifying
+         */
+        assertEquals(new BookAvailability(5L, false), result);
+        verifyNoInteractions(bookRepository);
+    }
+
+    @Test
+    void getBookAvailability_WithUnknownBook_ShouldThrowEntityNotFoundException() {
+        /**
+         * mocking index calls
+         */
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.exists(5L)).thenReturn(false);
+
+        /**
+         * verifying
+         */
+        assertThrows(EntityNotFoundException.class, () -> bookService.getBookAvailability(5L));
+    }
+
+    @Test
+    void getAvailabilityCounts_WithoutIndex_ShouldCountInDatabase() {
+        /**
+         * mocking dao calls
+         */
+        when(bookRepository.countByAvailableTrue()).thenReturn(4L);
+        when(bookRepository.countByAvailableFalse()).thenReturn(2L);
+
+        /**
+         * verifying
+         */
+        assertEquals(new AvailabilityCounts(4, 2), bookService.getAvailabilityCounts());
     }
 }
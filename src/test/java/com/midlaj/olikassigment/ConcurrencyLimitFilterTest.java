@@ -0,0 +1,106 @@
+package com.midlaj.olikassigment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.midlaj.olikassigment.config.ConcurrencyLimitConfig;
+import com.midlaj.olikassigment.config.ConcurrencyLimitFilter;
+import com.midlaj.olikassigment.dto.ErrorResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrency limit filter tests
+ */
+public class ConcurrencyLimitFilterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ConcurrencyLimitFilter("api", request -> !ConcurrencyLimitConfig.isExport(request), 1,
+                Duration.ofMillis(10), objectMapper, meterRegistry);
+    }
+
+    @Test
+    void doFilter_BeyondTheLimit_ShouldRejectWithServiceUnavailable() throws Exception {
+        /**
+         * a second request arriving while the only permit is held by the first one
+         */
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/book"), first, (request, response) ->
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/rental"), second, (r, s) -> {
+                }));
+
+        /**
+         * verifying, the second one is rejected and counted, the first one completes
+         */
+        assertEquals(HttpStatus.OK.value(), first.getStatus());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), second.getStatus());
+        assertEquals("1", second.getHeader("Retry-After"));
+        assertEquals("BUSY", objectMapper.readValue(second.getContentAsByteArray(), ErrorResponse.class).error_name());
+        assertEquals(1.0, meterRegistry.counter("library.requests.concurrency.rejected", "limit", "api").count());
+    }
+
+    @Test
+    void doFilter_AfterRequestCompletes_ShouldReleaseThePermit() throws Exception {
+        /**
+         * two requests one after the other
+         */
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/book"), first, (request, response) -> {
+        });
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/book"), second, (request, response) -> {
+        });
+
+        /**
+         * verifying
+         */
+        assertEquals(HttpStatus.OK.value(), second.getStatus());
+        assertEquals(1.0, meterRegistry.get("library.requests.concurrency.available").tag("limit", "api").gauge().value());
+    }
+
+    @Test
+    void doFilter_WithStreamingExport_ShouldNotTakeAnApiPermit() throws Exception {
+        /**
+         * an overdue export arriving while the only api permit is held
+         */
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockHttpServletResponse export = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/book"), first, (request, response) ->
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/rental/overdue/7/export"), export, (r, s) -> {
+                }));
+
+        /**
+         * verifying, the export is left to its own limit
+         */
+        assertEquals(HttpStatus.OK.value(), export.getStatus());
+        assertEquals(0.0, meterRegistry.counter("library.requests.concurrency.rejected", "limit", "api").count());
+    }
+
+    @Test
+    void isExport_ShouldMatchOnlyTheStreamingExports() {
+        /**
+         * verifying
+         */
+        assertTrue(ConcurrencyLimitConfig.isExport(new MockHttpServletRequest("GET", "/api/book/export")));
+        assertTrue(ConcurrencyLimitConfig.isExport(new MockHttpServletRequest("GET", "/api/rental/overdue/30/export")));
+        assertFalse(ConcurrencyLimitConfig.isExport(new MockHttpServletRequest("GET", "/api/book/1")));
+        assertFalse(ConcurrencyLimitConfig.isExport(new MockHttpServletRequest("GET", "/api/rental/overdue/30")));
+    }
+}
@@ -0,0 +1,105 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.index.IsbnIndex;
+import com.midlaj.olikassigment.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.when;
+
+/**
+ * Isbn index tests
+ */
+public class IsbnIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private IsbnIndex isbnIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        /**
+         * sized far below the test volume so the map grows and the bloom filter is rebuilt
+         */
+        isbnIndex = new IsbnIndex(bookRepository, true, true, 16, 0.01);
+        when(bookRepository.streamIsbns()).thenReturn(Stream.empty());
+        isbnIndex.load();
+    }
+
+    @Test
+    void lookup_AfterCreateAndDelete_ShouldTrackEveryIsbn() {
+        /**
+         * adding ten thousand books, then deleting every other one
+         */
+        for (long id = 1; id <= 10_000; id++) {
+            isbnIndex.onCreated(id, isbn(id));
+        }
+        for (long id = 2; id <= 10_000; id += 2) {
+            isbnIndex.onDeleted(isbn(id));
+        }
+
+        /**
+         * verifying, removals must not break the probe sequence of the remaining isbns
+         */
+        for (long id = 1; id <= 10_000; id++) {
+            assertEquals(id % 2 == 1 ? id : IsbnIndex.MISSING, isbnIndex.lookup(isbn(id)));
+        }
+        assertEquals(IsbnIndex.MISSING, isbnIndex.lookup("9790000000001"));
+    }
+
+    @Test
+    void lookup_WithIsbnNotPackable_ShouldReturnUnknown() {
+        /**
+         * verifying
+         */
+        assertEquals(IsbnIndex.UNKNOWN, isbnIndex.lookup("978-1-234-56789-7"));
+        assertEquals(IsbnIndex.UNKNOWN, isbnIndex.lookup("123456789X"));
+    }
+
+    @Test
+    void lookup_WithSeveralInstances_ShouldReturnUnknown() {
+        /**
+         * an index of one of several instances, told about a book of its own
+         */
+        IsbnIndex shared = new IsbnIndex(bookRepository, true, false, 16, 0.01);
+        shared.load();
+        shared.onCreated(1L, isbn(1));
+
+        /**
+         * verifying, another instance may have deleted the book or added the isbn, so both go to the database
+         */
+        assertFalse(shared.isReady());
+        assertEquals(IsbnIndex.UNKNOWN, shared.lookup(isbn(1)));
+        assertEquals(IsbnIndex.UNKNOWN, shared.lookup(isbn(2)));
+    }
+
+    @Test
+    void lookup_WhenDisabled_ShouldReturnUnknown() {
+        /**
+         * an index switched off, sized far beyond the test heap
+         */
+        IsbnIndex disabled = new IsbnIndex(bookRepository, false, true, Integer.MAX_VALUE, 0.01);
+        disabled.load();
+        disabled.onCreated(1L, isbn(1));
+        disabled.onDeleted(isbn(1));
+
+        /**
+         * verifying
+         */
+        assertFalse(disabled.isReady());
+        assertEquals(IsbnIndex.UNKNOWN, disabled.lookup(isbn(1)));
+    }
+
+    private static String isbn(long id) {
+        return String.valueOf(9780000000000L + id * 7);
+    }
+}
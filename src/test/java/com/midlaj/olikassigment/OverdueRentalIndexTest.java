@@ -0,0 +1,100 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.dto.RentalDateKey;
+import com.midlaj.olikassigment.index.OverdueRentalIndex;
+import com.midlaj.olikassigment.model.Rental;
+import com.midlaj.olikassigment.repository.RentalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Overdue rental index tests
+ */
+public class OverdueRentalIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 1);
+
+    @Mock
+    private RentalRepository rentalRepository;
+
+    private OverdueRentalIndex overdueRentalIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.initMocks(this);
+        overdueRentalIndex = new OverdueRentalIndex(rentalRepository, true);
+    }
+
+    @Test
+    void load_WhenDisabled_ShouldNotReadRentals() {
+        /**
+         * an index switched off
+         */
+        OverdueRentalIndex disabled = new OverdueRentalIndex(rentalRepository, false);
+        disabled.load();
+        disabled.onRented(rental(1L, TODAY.minusDays(30)));
+
+        /**
+         * verifying, it is never ready so the rental service queries the database
+         */
+        assertFalse(disabled.isReady());
+        assertEquals(List.of(), disabled.findOverdue(TODAY, null, 10));
+        verify(rentalRepository, never()).streamOpenRentalKeys();
+    }
+
+    @Test
+    void onRentedAndReturned_ShouldAddAndRemoveRentals() {
+        /**
+         * one open rental loaded, then a checkout and a return outside a transaction, applied at once
+         */
+        when(rentalRepository.streamOpenRentalKeys()).thenReturn(Stream.of(key(1L, 20)));
+        overdueRentalIndex.load();
+        overdueRentalIndex.onRented(rental(2L, TODAY.minusDays(10)));
+        overdueRentalIndex.onReturned(rental(1L, TODAY.minusDays(20)));
+
+        /**
+         * verifying
+         */
+        assertTrue(overdueRentalIndex.isReady());
+        assertEquals(List.of(key(2L, 10)), overdueRentalIndex.findOverdue(TODAY, null, 10));
+
+        overdueRentalIndex.discard(key(2L, 10));
+        assertEquals(List.of(), overdueRentalIndex.findOverdue(TODAY, null, 10));
+    }
+
+    @Test
+    void findOverdue_ShouldPageInRentalDateOrderBeforeTheDate() {
+        /**
+         * rentals of 40, 30 and 5 days ago, two of them on the same day, loaded out of order
+         */
+        when(rentalRepository.streamOpenRentalKeys()).thenReturn(Stream.of(
+                key(4L, 5), key(3L, 30), key(1L, 40), key(2L, 30)));
+        overdueRentalIndex.load();
+        LocalDate overdueDate = TODAY.minusDays(7);
+
+        /**
+         * verifying, the rental of 5 days ago is not overdue and ties are broken by id
+         */
+        assertEquals(List.of(key(1L, 40), key(2L, 30)), overdueRentalIndex.findOverdue(overdueDate, null, 2));
+        assertEquals(List.of(key(3L, 30)), overdueRentalIndex.findOverdue(overdueDate, key(2L, 30), 2));
+        assertEquals(List.of(), overdueRentalIndex.findOverdue(overdueDate, key(3L, 30), 2));
+        assertEquals(List.of(), overdueRentalIndex.findOverdue(TODAY.minusDays(40), null, 2));
+    }
+
+    private static RentalDateKey key(Long id, int daysAgo) {
+        return new RentalDateKey(TODAY.minusDays(daysAgo), id);
+    }
+
+    private static Rental rental(Long id, LocalDate rentalDate) {
+        return Rental.builder().id(id).rentalDate(rentalDate).build();
+    }
+}
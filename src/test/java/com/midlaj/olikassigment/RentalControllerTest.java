@@ -1,6 +1,10 @@
 package com.midlaj.olikassigment;
 
+import com.midlaj.olikassigment.dto.BatchItemResult;
+import com.midlaj.olikassigment.dto.BatchItemStatus;
+import com.midlaj.olikassigment.dto.RentalBatchRequest;
 import com.midlaj.olikassigment.dto.RentalRequest;
+import com.midlaj.olikassigment.dto.ReturnBatchRequest;
 import com.midlaj.olikassigment.model.Author;
 import com.midlaj.olikassigment.model.Book;
 import com.midlaj.olikassigment.model.Rental;
@@ -11,24 +15,34 @@ import com.midlaj.olikassigment.util.Utils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
- * Integration Testing of Rental Controller
+ * Integration Testing of Rental Controller, with the metrics exported as in production
  */
+@AutoConfigureObservability(tracing = false)
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class RentalControllerTest {
 
@@ -162,6 +176,40 @@ public class RentalControllerTest {
     }
 
 
+    /**
+     * Testing concurrent rentals of the same book, api "api/rental/new". Only one renter may get the book
+     */
+    @Test
+    public void testConcurrentRentalsOfSameBookOnlyOneCreated() throws Exception {
+
+        /**
+         * firing several rental requests for the same book at once
+         */
+        int renters = 8;
+        List<Callable<HttpStatusCode>> requests = new ArrayList<>();
+        for (int i = 0; i < renters; i++) {
+            RentalRequest rentalRequest = new RentalRequest(bookId, "Test_Renter_Name_" + UUID.randomUUID());
+            requests.add(() -> restTemplate.postForEntity(getBaseUrl() + "/new", rentalRequest, Object.class).getStatusCode());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(renters);
+        List<HttpStatusCode> statuses = new ArrayList<>();
+        try {
+            for (Future<HttpStatusCode> status : executor.invokeAll(requests)) {
+                statuses.add(status.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        /**
+         * checking that exactly one rental is CREATED and the others got CONFLICT
+         */
+        assertEquals(1, statuses.stream().filter(HttpStatus.CREATED::equals).count());
+        assertEquals(renters - 1, statuses.stream().filter(HttpStatus.CONFLICT::equals).count());
+    }
+
+
     /**
      * Testing retrieving a rental with id, api "api/rental/{id}"
      */
@@ -236,6 +284,102 @@ public class RentalControllerTest {
         assertNotNull(response.getBody().getReturnDate());
     }
 
+    /**
+     * Testing concurrent returns of the same rental, api "api/rental/return/{id}". Only one return may succeed,
+     * the others are replayed after the version conflict and see the book already returned
+     */
+    @Test
+    public void testConcurrentReturnsOfSameRentalOnlyOneReturned() throws Exception {
+
+        /**
+         * firing several return requests for the same rental at once
+         */
+        int returns = 4;
+        List<Callable<HttpStatusCode>> requests = new ArrayList<>();
+        for (int i = 0; i < returns; i++) {
+            requests.add(() -> restTemplate.postForEntity(getBaseUrl() + "/return/" + rentalId, null, Object.class).getStatusCode());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(returns);
+        List<HttpStatusCode> statuses = new ArrayList<>();
+        try {
+            for (Future<HttpStatusCode> status : executor.invokeAll(requests)) {
+                statuses.add(status.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        /**
+         * checking that exactly one return is OK and the others got CONFLICT
+         */
+        assertEquals(1, statuses.stream().filter(HttpStatus.OK::equals).count());
+        assertEquals(returns - 1, statuses.stream().filter(HttpStatus.CONFLICT::equals).count());
+    }
+
+
+    /**
+     * Testing renting out several books at once, api "api/rental/batch"
+     */
+    @Test
+    public void testCreateNewRentalsBatch() {
+
+        /**
+         * creating a batch with an available book and an unknown book
+         */
+        RentalBatchRequest rentalBatchRequest = new RentalBatchRequest(List.of(
+                new RentalRequest(bookId, "Test_Renter_Name_" + UUID.randomUUID()),
+                new RentalRequest(Long.MAX_VALUE, "Test_Renter_Name_" + UUID.randomUUID())));
+
+        /**
+         * performing a POST request
+         */
+        ResponseEntity<List<BatchItemResult>> response = restTemplate.exchange(
+                getBaseUrl() + "/batch",
+                HttpMethod.POST,
+                new HttpEntity<>(rentalBatchRequest),
+                new ParameterizedTypeReference<>() {
+                }
+        );
+
+        /**
+         * checking the status of every item
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(BatchItemStatus.RENTED, response.getBody().get(0).status());
+        assertNotNull(response.getBody().get(0).rental().getId());
+        assertEquals(BatchItemStatus.NOT_FOUND, response.getBody().get(1).status());
+    }
+
+    /**
+     * Testing returning several rentals at once, api "api/rental/return/batch"
+     */
+    @Test
+    public void testReturnBooksBatch() {
+
+        /**
+         * creating a batch with the open test rental given twice
+         */
+        ReturnBatchRequest returnBatchRequest = new ReturnBatchRequest(List.of(rentalId, rentalId));
+
+        /**
+         * performing a POST request
+         */
+        ResponseEntity<List<BatchItemResult>> response = restTemplate.exchange(
+                getBaseUrl() + "/return/batch",
+                HttpMethod.POST,
+                new HttpEntity<>(returnBatchRequest),
+                new ParameterizedTypeReference<>() {
+                }
+        );
+
+        /**
+         * checking the status of every item
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(BatchItemStatus.RETURNED, response.getBody().get(0).status());
+        assertEquals(BatchItemStatus.ALREADY_RETURNED, response.getBody().get(1).status());
+    }
 
     @Test
     public void testCheckOverdueRentalsWithDays() {
@@ -259,5 +403,108 @@ public class RentalControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
     }
 
+    @Test
+    public void testOverdueRentalsPagesIncludeNewRental() {
+
+        /**
+         * renting out the test book, it is overdue when looking one day ahead
+         */
+        RentalRequest rentalRequest = new RentalRequest(bookId, "Overdue Renter");
+        ResponseEntity<Rental> created = restTemplate.postForEntity(getBaseUrl() + "/new", rentalRequest, Rental.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+
+        /**
+         * following the cursor through every page
+         */
+        boolean found = false;
+        String cursor = null;
+        do {
+            String url = getBaseUrl() + "/overdue/-1?limit=500" + (cursor == null ? "" : "&after=" + cursor);
+            ResponseEntity<List<Rental>> response = restTemplate.exchange(url, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<>() {
+                    });
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            found |= response.getBody().stream().anyMatch(rental -> rental.getId().equals(created.getBody().getId()));
+            cursor = response.getHeaders().getFirst("X-Next-Cursor");
+        } while (cursor != null && !found);
+
+        assertTrue(found);
+
+        /**
+         * a returned rental is no longer overdue
+         */
+        restTemplate.postForEntity(getBaseUrl() + "/return/" + created.getBody().getId(), null, Rental.class);
+        ResponseEntity<String> export = restTemplate.getForEntity(getBaseUrl() + "/overdue/-1/export", String.class);
+        assertEquals(HttpStatus.OK, export.getStatusCode());
+        assertTrue(export.getBody() == null || !export.getBody().contains("\"id\":" + created.getBody().getId() + ","));
+    }
+
+    @Test
+    public void testCachedBookReflectsRentalAndReturn() {
+
+        String bookUrl = "http://localhost:" + port + "/api/book/" + bookId;
+
+        /**
+         * reading the book twice, the second read is served from the cache
+         */
+        assertEquals(true, restTemplate.getForObject(bookUrl, Book.class).getAvailable());
+        assertEquals(true, restTemplate.getForObject(bookUrl, Book.class).getAvailable());
+
+        /**
+         * renting out the book evicts it from the cache
+         */
+        Rental rental = restTemplate.postForObject(getBaseUrl() + "/new", new RentalRequest(bookId, "Cached Renter"), Rental.class);
+        assertEquals(false, restTemplate.getForObject(bookUrl, Book.class).getAvailable());
+
+        /**
+         * returning the book evicts it again
+         */
+        restTemplate.postForEntity(getBaseUrl() + "/return/" + rental.getId(), null, Rental.class);
+        assertEquals(true, restTemplate.getForObject(bookUrl, Book.class).getAvailable());
+    }
+
+    @Test
+    public void testExportOverdueRentals() {
+
+        /**
+         * performing GET request
+         */
+        ResponseEntity<String> response = restTemplate.getForEntity(getBaseUrl() + "/overdue/-1/export", String.class);
+
+        /**
+         * checking every line holds one rental
+         */
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getHeaders().getContentType().toString().startsWith("application/x-ndjson"));
+        response.getBody().lines().forEach(line -> assertTrue(line.startsWith("{\"id\":")));
+    }
+
+    /**
+     * Testing the metrics of a rejected rental, api "actuator/prometheus"
+     */
+    @Test
+    public void testRentingRentedBookIsCountedInPrometheusMetrics() {
+
+        /**
+         * renting the book twice, the second rental is rejected
+         */
+        restTemplate.postForEntity(getBaseUrl() + "/new", new RentalRequest(bookId, "Test_Renter_Name_" + UUID.randomUUID()), Object.class);
+        ResponseEntity<?> rejected = restTemplate.postForEntity(getBaseUrl() + "/new", new RentalRequest(bookId, "Test_Renter_Name_" + UUID.randomUUID()), Object.class);
+        assertEquals(HttpStatus.CONFLICT, rejected.getStatusCode());
+
+        /**
+         * performing GET request
+         */
+        String metrics = restTemplate.getForObject("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        /**
+         * checking the error counter and the histograms of the service and repository timers
+         */
+        assertTrue(metrics.lines().anyMatch(line -> line.startsWith("library_errors_total{")
+                && line.contains("error_name=\"NOT_AVAILABLE\",exception=\"AlreadyRentedException\"")));
+        assertTrue(metrics.lines().anyMatch(line -> line.startsWith("library_service_seconds_bucket{") && line.contains("method=\"createNewRental\"")));
+        assertTrue(metrics.lines().anyMatch(line -> line.startsWith("spring_data_repository_invocations_seconds_bucket{") && line.contains("repository=\"RentalRepository\"")));
+    }
+
 
 }
@@ -0,0 +1,96 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.annotation.RentalRetry;
+import com.midlaj.olikassigment.config.RetryConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Rental retry tests, the retry of @RentalRetry methods on optimistic locking conflicts
+ */
+public class RentalRetryTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    private ConflictingWriter writer;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("retry", Map.of(
+                "library.rental.retry.max-attempts", "3",
+                "library.rental.retry.delay", "1",
+                "library.rental.retry.max-delay", "2",
+                "library.rental.retry.multiplier", "2")));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(RetryConfig.class, ConflictingWriter.class);
+        context.refresh();
+
+        writer = context.getBean(ConflictingWriter.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void rentalRetry_ConflictThenSuccess_ShouldRetryAndCountTheConflict() {
+        /**
+         * a write conflicting once
+         */
+        assertEquals(2, writer.write(1));
+
+        /**
+         * verifying, the conflict is counted under the operation name
+         */
+        assertEquals(1.0, meterRegistry.counter("library.rental.optimistic.lock.conflicts", "operation", "write").count());
+        assertEquals(0.0, meterRegistry.counter("library.rental.optimistic.lock.exhausted", "operation", "write").count());
+    }
+
+    @Test
+    void rentalRetry_ConflictOnEveryAttempt_ShouldGiveUpAfterMaxAttempts() {
+        /**
+         * a write conflicting more often than the attempts allow
+         */
+        assertThrows(OptimisticLockingFailureException.class, () -> writer.write(5));
+
+        /**
+         * verifying
+         */
+        assertEquals(3, writer.attempts());
+        assertEquals(1.0, meterRegistry.counter("library.rental.optimistic.lock.exhausted", "operation", "write").count());
+    }
+
+    static class ConflictingWriter {
+
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        @RentalRetry("write")
+        public int write(int conflicts) {
+            if (attempts.incrementAndGet() <= conflicts) {
+                throw new OptimisticLockingFailureException("Conflict");
+            }
+            return attempts.get();
+        }
+
+        public int attempts() {
+            return attempts.get();
+        }
+    }
+}
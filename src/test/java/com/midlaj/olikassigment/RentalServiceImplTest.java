@@ -1,19 +1,31 @@
 package com.midlaj.olikassigment;
 
+import com.midlaj.olikassigment.config.CacheConfig;
+import com.midlaj.olikassigment.dto.BatchItemResult;
+import com.midlaj.olikassigment.dto.BatchItemStatus;
+import com.midlaj.olikassigment.dto.CursorPage;
+import com.midlaj.olikassigment.dto.RentalDateKey;
 import com.midlaj.olikassigment.dto.RentalRequest;
 import com.midlaj.olikassigment.exception.AlreadyRentedException;
 import com.midlaj.olikassigment.exception.EntityNotFoundException;
+import com.midlaj.olikassigment.exception.InvalidCursorException;
+import com.midlaj.olikassigment.index.AvailabilityIndex;
+import com.midlaj.olikassigment.index.OverdueRentalIndex;
 import com.midlaj.olikassigment.model.Book;
 import com.midlaj.olikassigment.model.Rental;
 import com.midlaj.olikassigment.repository.RentalRepository;
 import com.midlaj.olikassigment.service.BookService;
 import com.midlaj.olikassigment.service.RentalService;
 import com.midlaj.olikassigment.service.RentalServiceImpl;
+import com.midlaj.olikassigment.util.CursorUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -22,7 +34,8 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * Rental Service Implementation tests
@@ -36,12 +49,25 @@ public class RentalServiceImplTest {
     @Mock
     private BookService bookService;
 
+    @Mock
+    private OverdueRentalIndex overdueRentalIndex;
+
+    @Mock
+    private AvailabilityIndex availabilityIndex;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache bookCache;
+
     private RentalService rentalService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.initMocks(this);
-        rentalService = new RentalServiceImpl(rentalRepository, bookService) {
+        when(cacheManager.getCache(CacheConfig.BOOKS)).thenReturn(bookCache);
+        rentalService = new RentalServiceImpl(rentalRepository, bookService, overdueRentalIndex, availabilityIndex, cacheManager) {
         };
     }
 
@@ -53,13 +79,10 @@ public class RentalServiceImplTest {
          * testing object
          */
         RentalRequest rentalRequest = new RentalRequest(1L, "Test Renter");
-        Book book = new Book();
-        book.setAvailable(true);
 
         /**
-         * mocking dao call and book service call
+         * mocking dao call, book service checkout passes
          */
-        when(bookService.getBookById(rentalRequest.bookId())).thenReturn(book);
         when(rentalRepository.save(any(Rental.class))).thenReturn(new Rental());
 
         /**
@@ -71,6 +94,8 @@ public class RentalServiceImplTest {
          * verifying
          */
         assertNotNull(result);
+        verify(bookService, times(1)).checkoutBook(rentalRequest.bookId());
+        verify(availabilityIndex, times(1)).onRented(rentalRequest.bookId());
     }
 
     @Test
@@ -79,19 +104,17 @@ public class RentalServiceImplTest {
          * testing object
          */
         RentalRequest rentalRequest = new RentalRequest(1L, "Test Renter");
-        Book book = new Book();
-        book.setId(rentalRequest.bookId());
-        book.setAvailable(false);
 
         /**
          * mocking book service call
          */
-        when(bookService.getBookById(rentalRequest.bookId())).thenReturn(book);
+        doThrow(new AlreadyRentedException("Book is not available.")).when(bookService).checkoutBook(rentalRequest.bookId());
 
         /**
          * verifying
          */
         assertThrows(AlreadyRentedException.class, () -> rentalService.createNewRental(rentalRequest));
+        verify(rentalRepository, never()).save(any(Rental.class));
     }
 
     @Test
@@ -107,7 +130,6 @@ public class RentalServiceImplTest {
          * mocking book service call and dao call
          */
         when(rentalRepository.findById(rentalId)).thenReturn(Optional.of(rental));
-        when(bookService.getBookById(rental.getBookId())).thenReturn(new Book());
         when(rentalRepository.save(any(Rental.class))).thenReturn(new Rental());
 
         /**
@@ -116,9 +138,12 @@ public class RentalServiceImplTest {
         Rental result = rentalService.returnBook(rentalId);
 
         /**
-         * verifying
+         * verifying, the book is checked in without loading it
          */
         assertNotNull(result);
+        verify(bookService, times(1)).checkinBook(rental.getBookId());
+        verify(bookService, never()).getBookById(any());
+        verify(availabilityIndex, times(1)).onReturned(rental.getBookId());
     }
 
     @Test
@@ -160,6 +185,69 @@ public class RentalServiceImplTest {
         assertThrows(EntityNotFoundException.class, () -> rentalService.returnBook(rentalId));
     }
 
+    @Test
+    void createNewRentals_WithMixedBooks_ShouldReturnStatusPerItem() {
+        /**
+         * testing objects, one available book requested twice, one rented book and one missing book
+         */
+        Book available = Book.builder().id(1L).available(true).build();
+        Book rented = Book.builder().id(2L).available(false).build();
+        List<RentalRequest> rentalRequests = List.of(
+                new RentalRequest(1L, "Test Renter"),
+                new RentalRequest(2L, "Test Renter"),
+                new RentalRequest(3L, "Test Renter"),
+                new RentalRequest(1L, "Other Renter"));
+
+        /**
+         * mocking book service call
+         */
+        when(bookService.getBooksByIds(List.of(1L, 2L, 3L, 1L))).thenReturn(List.of(available, rented));
+
+        /**
+         * calling service method
+         */
+        List<BatchItemResult> results = rentalService.createNewRentals(rentalRequests);
+
+        /**
+         * verifying
+         */
+        assertEquals(List.of(BatchItemStatus.RENTED, BatchItemStatus.NOT_AVAILABLE, BatchItemStatus.NOT_FOUND, BatchItemStatus.NOT_AVAILABLE),
+                results.stream().map(BatchItemResult::status).toList());
+        assertFalse(available.getAvailable());
+        verify(rentalRepository, times(1)).saveAll(List.of(results.get(0).rental()));
+        verify(bookCache, times(1)).evict(1L);
+    }
+
+    @Test
+    void returnBooks_WithMixedRentals_ShouldReturnStatusPerItem() {
+        /**
+         * testing objects, one open rental, one returned rental and one missing rental
+         */
+        Rental open = Rental.builder().id(1L).bookId(10L).build();
+        Rental returned = Rental.builder().id(2L).bookId(20L).returnDate(LocalDate.now()).build();
+        Book book = Book.builder().id(10L).available(false).build();
+
+        /**
+         * mocking dao call and book service call
+         */
+        when(rentalRepository.findAllById(List.of(1L, 2L, 3L))).thenReturn(List.of(open, returned));
+        when(bookService.getBooksByIds(List.of(10L))).thenReturn(List.of(book));
+
+        /**
+         * calling service method
+         */
+        List<BatchItemResult> results = rentalService.returnBooks(List.of(1L, 2L, 3L));
+
+        /**
+         * verifying
+         */
+        assertEquals(List.of(BatchItemStatus.RETURNED, BatchItemStatus.ALREADY_RETURNED, BatchItemStatus.NOT_FOUND),
+                results.stream().map(BatchItemResult::status).toList());
+        assertNotNull(open.getReturnDate());
+        assertTrue(book.getAvailable());
+        verify(bookCache, times(1)).evict(10L);
+    }
+
     @Test
     void findOverdueRentals_ShouldReturnListOfOverdueRentals() {
         /**
@@ -171,19 +259,128 @@ public class RentalServiceImplTest {
         List<Rental> overdueRentals = new ArrayList<>();
 
         /**
-         * mocking dao call
+         * mocking dao call, the overdue index is not loaded
          */
-        when(rentalRepository.findByRentalDateBeforeAndReturnDateIsNull(overdueDate)).thenReturn(overdueRentals);
+        when(rentalRepository.findByRentalDateBeforeAndReturnDateIsNullOrderByRentalDateAscIdAsc(overdueDate, Limit.of(51)))
+                .thenReturn(overdueRentals);
 
         /**
          * calling service method
          */
-        List<Rental> result = rentalService.findOverdueRentals(days);
+        CursorPage<Rental> result = rentalService.findOverdueRentals(days, null, null);
 
         /**
          * verifying
          */
-        assertEquals(overdueRentals, result);
+        assertEquals(overdueRentals, result.items());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void findOverdueRentals_WithCursor_ShouldSeekPastRentalDateAndId() {
+        /**
+         * testing objects, one row more than the page size
+         */
+        LocalDate overdueDate = LocalDate.now().minusDays(7);
+        LocalDate rentalDate = overdueDate.minusDays(30);
+        List<Rental> rentals = new ArrayList<>();
+        rentals.add(Rental.builder().id(4L).rentalDate(rentalDate).build());
+        rentals.add(Rental.builder().id(2L).rentalDate(rentalDate.plusDays(1)).build());
+
+        /**
+         * mocking dao call
+         */
+        when(rentalRepository.findOverdueAfter(overdueDate, rentalDate, 3L, Limit.of(2))).thenReturn(rentals);
+
+        /**
+         * calling service method
+         */
+        CursorPage<Rental> result = rentalService.findOverdueRentals(7,
+                CursorUtils.encodeRentalDate(new RentalDateKey(rentalDate, 3L)), 1);
+
+        /**
+         * verifying, the next page starts after the last rental of this page
+         */
+        assertEquals(1, result.items().size());
+        assertEquals(new RentalDateKey(rentalDate, 4L), CursorUtils.decodeRentalDate(result.nextCursor()));
+    }
+
+    @Test
+    void findOverdueRentals_WithLoadedIndex_ShouldLoadOnlyThePageRentals() {
+        /**
+         * testing objects, the index knows three overdue rentals and the page size is two
+         */
+        LocalDate overdueDate = LocalDate.now().minusDays(7);
+        LocalDate rentalDate = overdueDate.minusDays(30);
+        List<RentalDateKey> keys = List.of(new RentalDateKey(rentalDate, 5L), new RentalDateKey(rentalDate, 6L),
+                new RentalDateKey(rentalDate, 7L));
+        Rental first = Rental.builder().id(5L).rentalDate(rentalDate).build();
+        Rental second = Rental.builder().id(6L).rentalDate(rentalDate).build();
+        Rental third = Rental.builder().id(7L).rentalDate(rentalDate).build();
+
+        /**
+         * mocking index and dao call
+         */
+        when(overdueRentalIndex.isReady()).thenReturn(true);
+        when(overdueRentalIndex.findOverdue(overdueDate, null, 3)).thenReturn(keys);
+        when(rentalRepository.findAllById(List.of(5L, 6L, 7L))).thenReturn(List.of(third, second, first));
+
+        /**
+         * calling service method
+         */
+        CursorPage<Rental> result = rentalService.findOverdueRentals(7, null, 2);
+
+        /**
+         * verifying, rentals keep the index order and the database is not scanned
+         */
+        assertEquals(List.of(first, second), result.items());
+        assertEquals(new RentalDateKey(rentalDate, 6L), CursorUtils.decodeRentalDate(result.nextCursor()));
+        verify(rentalRepository, never()).findByRentalDateBeforeAndReturnDateIsNullOrderByRentalDateAscIdAsc(any(), any());
+    }
+
+    @Test
+    void findOverdueRentals_WithRentalReturnedElsewhere_ShouldDiscardItAndFillThePage() {
+        /**
+         * testing objects, the second of the three rentals the index knows was returned through another instance
+         */
+        LocalDate overdueDate = LocalDate.now().minusDays(7);
+        LocalDate rentalDate = overdueDate.minusDays(30);
+        RentalDateKey returnedKey = new RentalDateKey(rentalDate, 6L);
+        Rental first = Rental.builder().id(5L).rentalDate(rentalDate).build();
+        Rental returned = Rental.builder().id(6L).rentalDate(rentalDate).returnDate(LocalDate.now()).build();
+        Rental third = Rental.builder().id(7L).rentalDate(rentalDate).build();
+        Rental fourth = Rental.builder().id(8L).rentalDate(rentalDate).build();
+
+        /**
+         * mocking index and dao calls, the page is topped up after the returned rental
+         */
+        when(overdueRentalIndex.isReady()).thenReturn(true);
+        when(overdueRentalIndex.findOverdue(overdueDate, null, 3)).thenReturn(List.of(
+                new RentalDateKey(rentalDate, 5L), returnedKey, new RentalDateKey(rentalDate, 7L)));
+        when(overdueRentalIndex.findOverdue(overdueDate, new RentalDateKey(rentalDate, 7L), 1))
+                .thenReturn(List.of(new RentalDateKey(rentalDate, 8L)));
+        when(rentalRepository.findAllById(List.of(5L, 6L, 7L))).thenReturn(List.of(first, returned, third));
+        when(rentalRepository.findAllById(List.of(8L))).thenReturn(List.of(fourth));
+
+        /**
+         * calling service method
+         */
+        CursorPage<Rental> result = rentalService.findOverdueRentals(7, null, 2);
+
+        /**
+         * verifying, the page is full and the returned rental is dropped from the index
+         */
+        assertEquals(List.of(first, third), result.items());
+        assertEquals(new RentalDateKey(rentalDate, 7L), CursorUtils.decodeRentalDate(result.nextCursor()));
+        verify(overdueRentalIndex, times(1)).discard(returnedKey);
+    }
+
+    @Test
+    void findOverdueRentals_WithMalformedCursor_ShouldThrowInvalidCursorException() {
+        /**
+         * verifying, an id cursor is not an overdue cursor
+         */
+        assertThrows(InvalidCursorException.class, () -> rentalService.findOverdueRentals(7, CursorUtils.encode(10L), 10));
     }
 
     @Test
@@ -196,17 +393,53 @@ public class RentalServiceImplTest {
         /**
          * mocking dao call
          */
-        when(rentalRepository.findAll()).thenReturn(rentals);
+        when(rentalRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class))).thenReturn(rentals);
+
+        /**
+         * calling service method
+         */
+        CursorPage<Rental> result = rentalService.getAllRentals(null, null);
+
+        /**
+         * verifying
+         */
+        assertEquals(rentals, result.items());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    void getAllRentals_WithMoreRowsThanLimit_ShouldReturnNextCursor() {
+        /**
+         * testing objects, one row more than the page size
+         */
+        List<Rental> rentals = new ArrayList<>();
+        rentals.add(Rental.builder().id(11L).build());
+        rentals.add(Rental.builder().id(12L).build());
+        rentals.add(Rental.builder().id(13L).build());
+
+        /**
+         * mocking dao call
+         */
+        when(rentalRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(3))).thenReturn(rentals);
 
         /**
          * calling service method
          */
-        List<Rental> result = rentalService.getAllRentals();
+        CursorPage<Rental> result = rentalService.getAllRentals(CursorUtils.encode(10L), 2);
 
         /**
          * verifying
          */
-        assertEquals(rentals, result);
+        assertEquals(2, result.items().size());
+        assertEquals(12L, CursorUtils.decode(result.nextCursor()));
+    }
+
+    @Test
+    void getAllRentals_WithMalformedCursor_ShouldThrowInvalidCursorException() {
+        /**
+         * verifying
+         */
+        assertThrows(InvalidCursorException.class, () -> rentalService.getAllRentals("not-a-cursor", 10));
     }
 
     @Test
@@ -0,0 +1,141 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.sql.ReplicaLagMonitor;
+import com.midlaj.olikassigment.sql.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Read replica routing tests
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+
+    private DataSource first;
+
+    private DataSource second;
+
+    private ReplicaLagMonitor monitor;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        first = mock(DataSource.class);
+        second = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(mock(Connection.class));
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", first);
+        replicas.put("replica-2", second);
+        monitor = new ReplicaLagMonitor(replicas, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        routingDataSource = new ReplicaRoutingDataSource(primary, monitor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void getConnection_BeforeTheFirstCheck_ShouldUseThePrimary() throws SQLException {
+        /**
+         * a read only transaction before any replica was checked
+         */
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        routingDataSource.getConnection();
+
+        /**
+         * verifying, the primary is used and counted as a fallback
+         */
+        verify(primary).getConnection();
+        assertEquals(1, monitor.fallbackCount());
+        assertTrue(Double.isNaN(monitor.lagSeconds("replica-1")));
+    }
+
+    @Test
+    void getConnection_WithHealthyReplicas_ShouldSendOnlyReadOnlyTransactionsToThem() throws SQLException {
+        /**
+         * both replicas within the maximum lag
+         */
+        Connection firstConnection = lagConnection(0.2);
+        Connection secondConnection = lagConnection(0);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+        monitor.check();
+
+        /**
+         * a write, then four read only transactions
+         */
+        routingDataSource.getConnection();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        for (int i = 0; i < 4; i++) {
+            routingDataSource.getConnection();
+        }
+
+        /**
+         * verifying, the write runs on the primary and the replicas take turns, each was also checked once
+         */
+        verify(primary, times(1)).getConnection();
+        verify(first, times(3)).getConnection();
+        verify(second, times(3)).getConnection();
+        assertEquals(List.of("replica-1", "replica-2"), monitor.healthyReplicas());
+        assertEquals(0.2, monitor.lagSeconds("replica-1"));
+        assertEquals(0, monitor.fallbackCount());
+    }
+
+    @Test
+    void check_ReplicaBehindOrDown_ShouldBeSkipped() throws SQLException {
+        /**
+         * the first replica five seconds behind, the second one not answering
+         */
+        Connection firstConnection = lagConnection(5);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenThrow(new SQLException("Connection refused"));
+        monitor.check();
+
+        /**
+         * verifying, read only transactions fall back to the primary
+         */
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        routingDataSource.getConnection();
+
+        verify(primary).getConnection();
+        assertEquals(List.of(), monitor.healthyReplicas());
+        assertEquals(5.0, monitor.lagSeconds("replica-1"));
+        assertTrue(Double.isNaN(monitor.lagSeconds("replica-2")));
+        assertEquals(1, monitor.fallbackCount());
+    }
+
+    /**
+     * Connection answering the lag query with the lag given
+     */
+    private static Connection lagConnection(double lag) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getDouble(1)).thenReturn(lag);
+        return connection;
+    }
+}
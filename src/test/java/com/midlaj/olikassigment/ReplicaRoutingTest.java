@@ -0,0 +1,178 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.dto.RentalRequest;
+import com.midlaj.olikassigment.model.Author;
+import com.midlaj.olikassigment.model.Book;
+import com.midlaj.olikassigment.model.Rental;
+import com.midlaj.olikassigment.repository.AuthorRepository;
+import com.midlaj.olikassigment.repository.BookRepository;
+import com.midlaj.olikassigment.sql.ReplicaLagMonitor;
+import com.midlaj.olikassigment.util.Utils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration Testing of the read replica routing. The replica is the test database itself under another
+ * application name, its pool hands out read only connections, so a write routed to it would fail
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "library.replicas.enabled=true",
+        "library.replicas.urls=${spring.datasource.url}?ApplicationName=" + ReplicaRoutingTest.REPLICA})
+public class ReplicaRoutingTest {
+
+    static final String REPLICA = "library-replica";
+
+    private static final String FAKE_REPLICA = "replica_lag_test";
+
+    @Value("${spring.datasource.url}")
+    private String jdbcUrl;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long bookId;
+
+    @BeforeEach
+    public void setupTestData() {
+
+        /**
+         *  Create author and book test data, then check the replica
+         */
+        Author author = authorRepository.save(Author.builder()
+                .name("Test_Author_1" + UUID.randomUUID())
+                .biography("Test_Biography_1_Lorem Ipsum Test Value, 64 characters required to pass validation")
+                .build());
+        Book book = bookRepository.save(Book.builder()
+                .title("Test_Book_1" + UUID.randomUUID())
+                .author(author)
+                .isbn(Utils.generateRandomIsbn13())
+                .publicationYear(2020)
+                .available(true)
+                .build());
+        bookId = book.getId();
+
+        replicaLagMonitor.check();
+    }
+
+    /**
+     * Testing read only transactions run on the replica and the others on the primary
+     */
+    @Test
+    public void testReadOnlyTransactionsRunOnTheReplica() {
+        assertEquals(List.of("replica-1"), replicaLagMonitor.healthyReplicas());
+
+        assertEquals(REPLICA, applicationName(true));
+        assertNotEquals(REPLICA, applicationName(false));
+    }
+
+    /**
+     * Testing a listing and a rental through the api, a rental sent to the replica would fail
+     */
+    @Test
+    public void testListingAndRentalWithReplicas() {
+        long fallbacks = replicaLagMonitor.fallbackCount();
+
+        /**
+         * a listing, read only
+         */
+        ResponseEntity<String> books = restTemplate.getForEntity("http://localhost:" + port + "/api/book", String.class);
+        assertEquals(HttpStatus.OK, books.getStatusCode());
+
+        /**
+         * a rental, written on the primary
+         */
+        ResponseEntity<Rental> rental = restTemplate.postForEntity("http://localhost:" + port + "/api/rental/new",
+                new RentalRequest(bookId, "Test_Renter_Name_" + UUID.randomUUID()), Rental.class);
+        assertEquals(HttpStatus.CREATED, rental.getStatusCode());
+        assertEquals(fallbacks, replicaLagMonitor.fallbackCount());
+    }
+
+    /**
+     * Testing the lag check of a replica that lost its connection to the primary. The replica functions and
+     * pg_stat_wal_receiver are shadowed by a schema put before pg_catalog, so the test database answers as
+     * a replica that has replayed everything it received
+     */
+    @Test
+    public void testDisconnectedReplicaIsSkipped() {
+        jdbcTemplate.execute("drop schema if exists " + FAKE_REPLICA + " cascade");
+        jdbcTemplate.execute("create schema " + FAKE_REPLICA);
+        jdbcTemplate.execute("create function " + FAKE_REPLICA + ".pg_is_in_recovery() returns boolean language sql as 'select true'");
+        jdbcTemplate.execute("create function " + FAKE_REPLICA + ".pg_last_wal_receive_lsn() returns pg_lsn language sql as 'select ''0/3000000''::pg_lsn'");
+        jdbcTemplate.execute("create function " + FAKE_REPLICA + ".pg_last_wal_replay_lsn() returns pg_lsn language sql as 'select ''0/3000000''::pg_lsn'");
+        jdbcTemplate.execute("create function " + FAKE_REPLICA + ".pg_last_xact_replay_timestamp() returns timestamptz language sql as 'select now() - interval ''1 hour'''");
+        jdbcTemplate.execute("create table " + FAKE_REPLICA + ".pg_stat_wal_receiver (status text)");
+
+        DriverManagerDataSource replica = new DriverManagerDataSource(
+                jdbcUrl + "?currentSchema=" + FAKE_REPLICA + ",pg_catalog", username, password);
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(Map.of("replica-1", replica), Duration.ofSeconds(1), Duration.ofSeconds(1));
+        try {
+            /**
+             * the wal receiver streaming, the replica is caught up
+             */
+            jdbcTemplate.update("insert into " + FAKE_REPLICA + ".pg_stat_wal_receiver values ('streaming')");
+            monitor.check();
+            assertEquals(List.of("replica-1"), monitor.healthyReplicas());
+            assertEquals(0.0, monitor.lagSeconds("replica-1"));
+
+            /**
+             * the wal receiver gone, nothing left to replay but the replica is skipped
+             */
+            jdbcTemplate.update("delete from " + FAKE_REPLICA + ".pg_stat_wal_receiver");
+            monitor.check();
+            assertEquals(List.of(), monitor.healthyReplicas());
+            assertTrue(Double.isNaN(monitor.lagSeconds("replica-1")));
+        } finally {
+            jdbcTemplate.execute("drop schema " + FAKE_REPLICA + " cascade");
+        }
+    }
+
+    private String applicationName(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("select current_setting('application_name')", String.class));
+    }
+}
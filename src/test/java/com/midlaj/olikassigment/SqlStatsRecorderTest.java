@@ -0,0 +1,106 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.dto.SqlStatsReport;
+import com.midlaj.olikassigment.sql.SqlStatsRecorder;
+import com.midlaj.olikassigment.sql.StatementStatsDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sql statistics tests, statements run through StatementStatsDataSource over mocked connections
+ */
+public class SqlStatsRecorderTest {
+
+    private static final String AUTHOR_BY_ID = "select a1_0.id,a1_0.author_name from author a1_0 where a1_0.id=?";
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @Mock
+    private Statement statement;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(connection.createStatement()).thenReturn(statement);
+    }
+
+    @Test
+    void end_WithSelectRepeatedPastTheThreshold_ShouldKeepItAsRepeatedQuery() throws Exception {
+        SqlStatsRecorder recorder = new SqlStatsRecorder(Duration.ofMinutes(1), 10, 10);
+        DataSource dataSource = new StatementStatsDataSource(target, recorder);
+
+        /**
+         * a request loading twelve authors one at a time and inserting one rental
+         */
+        recorder.begin(() -> "GET /api/book");
+        try (Connection timed = dataSource.getConnection()) {
+            for (int i = 0; i < 12; i++) {
+                timed.prepareStatement(AUTHOR_BY_ID).executeQuery();
+            }
+            timed.prepareStatement("insert into rental (book_id) values (?)").executeUpdate();
+        }
+        SqlStatsRecorder.RequestStats stats = recorder.end();
+
+        /**
+         * verifying, the statements reached the target and only the select is repeated
+         */
+        verify(connection).close();
+        assertEquals(13, stats.statements());
+        SqlStatsReport report = recorder.report();
+        assertEquals(1, report.repeatedQueries().size());
+        assertEquals("GET /api/book", report.repeatedQueries().get(0).request());
+        assertEquals(AUTHOR_BY_ID, report.repeatedQueries().get(0).sql());
+        assertEquals(12, report.repeatedQueries().get(0).executions());
+        assertTrue(report.slowQueries().isEmpty());
+    }
+
+    @Test
+    void record_SlowStatements_ShouldKeepOnlyTheLatestOnes() throws Exception {
+        SqlStatsRecorder recorder = new SqlStatsRecorder(Duration.ZERO, 10, 2);
+        DataSource dataSource = new StatementStatsDataSource(target, recorder);
+
+        /**
+         * three statements outside a request, every statement is slow with a zero threshold
+         */
+        try (Connection timed = dataSource.getConnection()) {
+            timed.createStatement().execute("select 1");
+            timed.createStatement().execute("select 2");
+            timed.createStatement().execute("select 3");
+        }
+
+        /**
+         * verifying, newest first
+         */
+        SqlStatsReport report = recorder.report();
+        assertEquals(3, report.slowQueryCount());
+        assertEquals(2, report.slowQueries().size());
+        assertEquals("select 3", report.slowQueries().get(0).sql());
+        assertEquals("select 2", report.slowQueries().get(1).sql());
+
+        recorder.clear();
+        assertTrue(recorder.report().slowQueries().isEmpty());
+    }
+}
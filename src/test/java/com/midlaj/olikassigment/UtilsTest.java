@@ -0,0 +1,57 @@
+package com.midlaj.olikassigment;
+
+import com.midlaj.olikassigment.util.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Utils tests
+ */
+public class UtilsTest {
+
+    @Test
+    void isbn13_WithSequenceNumber_ShouldAppendTheCheckDigit() {
+        /**
+         * verifying, the first number and a published isbn with the 979 prefix
+         */
+        assertEquals("9790000000001", Utils.isbn13(0));
+        assertEquals("9791090636071", Utils.isbn13(109_063_607));
+        assertEquals("9799999999990", Utils.isbn13(999_999_999));
+    }
+
+    @Test
+    void isbn13_ForManyNumbers_ShouldBeDistinctAndPassTheChecksum() {
+        /**
+         * verifying, the weighted digit sum of a valid isbn-13 is a multiple of 10
+         */
+        Set<String> isbns = new HashSet<>();
+        for (long number = 0; number < 100_000; number += 7) {
+            String isbn = Utils.isbn13(number);
+            assertEquals(13, isbn.length());
+            assertEquals(0, checksum(isbn) % 10, isbn);
+            assertTrue(isbns.add(isbn));
+        }
+        assertEquals(0, checksum(Utils.generateRandomIsbn13()) % 10);
+    }
+
+    @Test
+    void isbn13_OutOfRange_ShouldThrowIllegalArgumentException() {
+        /**
+         * verifying
+         */
+        assertThrows(IllegalArgumentException.class, () -> Utils.isbn13(-1));
+        assertThrows(IllegalArgumentException.class, () -> Utils.isbn13(1_000_000_000L));
+    }
+
+    private static int checksum(String isbn) {
+        int sum = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            sum += (isbn.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return sum;
+    }
+}